@@ -1,45 +1,24 @@
 package com.sh.dao;
 
+import com.sh.datasource.SessionFactoryRouter;
 import org.hibernate.Session;
-import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 
 public class GenericDao<T extends java.io.Serializable> {
 
 
     @Autowired
-    @Qualifier("masterSessionFactory")
-    private SessionFactory masterSessionFactory;
+    private SessionFactoryRouter sessionFactoryRouter;
 
+    /**
+     * 如果是master 包下的dao 默认指定为 masterSessionFactory,
+     * 其余dao的读操作由SessionFactoryRouter在从库间分配. 每个dao只判断一次.
+     * ReadWriteRoutingTransactionManager开启的事务内使用该事务所在的库,不再区分dao.
+     */
+    private final boolean master = getClass().getName().startsWith("com.sh.dao.master.");
 
-    @Autowired
-    @Qualifier("slaveSessionFactory")
-    private SessionFactory slaveSessionFactory;
-
-
-    private SessionFactory sessionFactory;
-
-
-    private void fixSession() {
-        String name = this.getClass().getName();
-        System.out.println("className=" + name);
-        /**
-         * 如果是master 包下的dao 全部指定为 masterSessionFactory
-         */
-        if (name.indexOf("com.sh.dao.master") > -1) {
-            sessionFactory = masterSessionFactory;
-        }
-        /**
-         * 默认的dao是 slaveSessionFactory 下的库
-         */
-        else {
-            sessionFactory = slaveSessionFactory;
-        }
-    }
 
     public Session getSession() {
-        fixSession();
-        return sessionFactory.getCurrentSession();
+        return sessionFactoryRouter.getSessionFactory(master).getCurrentSession();
     }
-}
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class UsersDAO<T> {
@@ -40,10 +41,29 @@ public class UsersDAO<T> {
         getSession().clear();
     }
 
-    public List<T> getAllUser(String hsql) {
+    /**
+     * 执行hql,参数以?占位并按顺序绑定,不要把参数值拼接进hql,否则每个值都会生成新的查询计划和PreparedStatement.
+     */
+    public List<T> getAllUser(String hsql, Object... values) {
         Session session = sessionFactory.getCurrentSession();
         Query query = session.createQuery(hsql);
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
+        return query.list();
+    }
 
+    /**
+     * 执行实体上声明的命名查询,按名称绑定:name参数.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> findByNamedQuery(String queryName, Map<String, ?> params) {
+        Query query = getSession().getNamedQuery(queryName);
+        if (params != null) {
+            for (Map.Entry<String, ?> param : params.entrySet()) {
+                query.setParameter(param.getKey(), param.getValue());
+            }
+        }
         return query.list();
     }
-}
\ No newline at end of file
+}
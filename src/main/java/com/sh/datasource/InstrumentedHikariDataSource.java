@@ -0,0 +1,38 @@
+package com.sh.datasource;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * 启动时预热并统计取连接超时次数的HikariCP连接池.
+ * <p/>
+ * 设置metricRegistry后,HikariCP登记"连接池名.pool.Wait"(取连接等待时间)、Usage、TotalConnections、IdleConnections、
+ * ActiveConnections、PendingConnections,本类另外登记"连接池名.pool.ConnectionTimeouts"(取连接超时次数).
+ * 容器初始化时即建立连接池,minimumIdle与maximumPoolSize相同时启动后连接池即被填满.
+ */
+public class InstrumentedHikariDataSource extends HikariDataSource implements InitializingBean {
+    private volatile Meter timeouts;
+
+    public void afterPropertiesSet() throws SQLException {
+        if (getMetricRegistry() instanceof MetricRegistry)
+            timeouts = ((MetricRegistry) getMetricRegistry()).meter(MetricRegistry.name(getPoolName(), "pool", "ConnectionTimeouts"));
+        // 取一次连接以建立连接池,连接失败时启动即报错
+        getConnection().close();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try {
+            return super.getConnection();
+        } catch (SQLTransientConnectionException e) {
+            if (timeouts != null) timeouts.mark();
+            throw e;
+        }
+    }
+}
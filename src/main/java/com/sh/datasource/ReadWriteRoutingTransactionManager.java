@@ -0,0 +1,260 @@
+package com.sh.datasource;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpSession;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按事务是否只读在主库与从库之间路由的事务管理器,用于txAdvice.
+ * <p/>
+ * 只读事务直接在选中的从库上开启,不再占用主库连接;写事务使用masterTransactionManager.
+ * 选中的SessionFactory记入{@link RoutingContext},事务内的DAO都使用它. 嵌套的事务沿用外层的路由,
+ * 只有REQUIRES_NEW的事务重新路由.
+ * <p/>
+ * 写事务提交后,同一请求内随后的只读事务,以及同一HTTP Session在readYourWritesWindow毫秒内的只读事务仍读主库,
+ * 避免因主从复制延迟读不到刚写入的数据. 只有实际执行过写语句的事务才算写入,由主库SessionFactory上配置的
+ * {@link WriteTrackingInterceptor}报告;未读写数据的非只读事务不影响之后的路由.
+ * 不在HTTP请求内的调用没有可区分的调用者,不做此处理.
+ *
+ * @see SessionFactoryRouter
+ */
+public class ReadWriteRoutingTransactionManager implements PlatformTransactionManager, InitializingBean {
+    private static final int CLEANUP_THRESHOLD = 10000;
+    private static final String WRITTEN_ATTRIBUTE = ReadWriteRoutingTransactionManager.class.getName() + ".WRITTEN";
+
+    private SessionFactoryRouter sessionFactoryRouter;
+    private PlatformTransactionManager masterTransactionManager;
+    private long readYourWritesWindow = 1000; // 写入后读主库的时长(毫秒)
+
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<SessionFactory, PlatformTransactionManager> replicaTransactionManagers = new ConcurrentHashMap<SessionFactory, PlatformTransactionManager>();
+
+    public void afterPropertiesSet() {
+        Assert.notNull(sessionFactoryRouter, "sessionFactoryRouter is required");
+        Assert.notNull(masterTransactionManager, "masterTransactionManager is required");
+    }
+
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        RoutingContext.Route previousRoute = RoutingContext.current();
+        SessionFactory previousSessionFactory = RoutingContext.currentSessionFactory();
+        boolean requiresNew = definition != null && definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW;
+        RoutingContext.Route route = previousRoute;
+        SessionFactory sessionFactory = previousSessionFactory;
+        if (route == null || requiresNew) {
+            boolean readOnly = definition != null && definition.isReadOnly();
+            sessionFactory = readOnly && !isRecentlyWritten() ? sessionFactoryRouter.getReadSessionFactory() : sessionFactoryRouter.getMaster();
+            route = sessionFactory == sessionFactoryRouter.getMaster() ? RoutingContext.Route.MASTER : RoutingContext.Route.REPLICA;
+        }
+        PlatformTransactionManager transactionManager = getTransactionManager(sessionFactory);
+        TransactionStatus status = transactionManager.getTransaction(definition);
+        RoutingContext.set(route, sessionFactory);
+        if (status.isNewTransaction() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            trackWrites();
+        }
+        return new RoutedTransactionStatus(status, transactionManager, previousRoute, previousSessionFactory);
+    }
+
+    public void commit(TransactionStatus status) throws TransactionException {
+        RoutedTransactionStatus routed = (RoutedTransactionStatus) status;
+        try {
+            routed.transactionManager.commit(routed.delegate);
+        } finally {
+            RoutingContext.set(routed.previousRoute, routed.previousSessionFactory);
+        }
+    }
+
+    public void rollback(TransactionStatus status) throws TransactionException {
+        RoutedTransactionStatus routed = (RoutedTransactionStatus) status;
+        try {
+            routed.transactionManager.rollback(routed.delegate);
+        } finally {
+            RoutingContext.set(routed.previousRoute, routed.previousSessionFactory);
+        }
+    }
+
+    /**
+     * 取SessionFactory的事务管理器,从库的事务管理器在首次使用时创建.
+     */
+    protected PlatformTransactionManager getTransactionManager(SessionFactory sessionFactory) {
+        if (sessionFactory == sessionFactoryRouter.getMaster()) return masterTransactionManager;
+        PlatformTransactionManager transactionManager = replicaTransactionManagers.get(sessionFactory);
+        if (transactionManager == null) {
+            HibernateTransactionManager replica = new HibernateTransactionManager(sessionFactory);
+            replica.afterPropertiesSet();
+            transactionManager = replicaTransactionManagers.putIfAbsent(sessionFactory, replica);
+            if (transactionManager == null) transactionManager = replica;
+        }
+        return transactionManager;
+    }
+
+    /**
+     * 写事务提交后,若事务中执行过写语句则记录写入,供随后的只读事务判断是否读主库.
+     */
+    private void trackWrites() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return;
+        TransactionSynchronizationManager.registerSynchronization(new WriteSynchronization(attributes, sessionKey(attributes)));
+    }
+
+    /**
+     * 当前事务执行了写语句,由{@link WriteTrackingInterceptor}调用.
+     */
+    static void statementWritten() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        // REQUIRES_NEW挂起外层事务时其同步也被挂起,这里只取到当前事务的同步
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof WriteSynchronization) ((WriteSynchronization) synchronization).written = true;
+        }
+    }
+
+    private boolean isRecentlyWritten() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return false;
+        if (attributes.getAttribute(WRITTEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) return true;
+        String key = sessionKey(attributes);
+        if (key == null) return false;
+        Long time = lastWrites.get(key);
+        return time != null && System.currentTimeMillis() - time < readYourWritesWindow;
+    }
+
+    /**
+     * 取已存在的HTTP Session的键,没有时返回null.
+     */
+    protected String sessionKey(RequestAttributes attributes) {
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpSession session = ((ServletRequestAttributes) attributes).getRequest().getSession(false);
+            if (session != null) return session.getId();
+        }
+        return null;
+    }
+
+    private void markWritten(String key) {
+        long now = System.currentTimeMillis();
+        lastWrites.put(key, now);
+        if (lastWrites.size() > CLEANUP_THRESHOLD) {
+            for (Iterator<Long> it = lastWrites.values().iterator(); it.hasNext(); ) {
+                if (now - it.next() >= readYourWritesWindow) it.remove();
+            }
+        }
+    }
+
+    public SessionFactoryRouter getSessionFactoryRouter() {
+        return sessionFactoryRouter;
+    }
+
+    public void setSessionFactoryRouter(SessionFactoryRouter sessionFactoryRouter) {
+        this.sessionFactoryRouter = sessionFactoryRouter;
+    }
+
+    public PlatformTransactionManager getMasterTransactionManager() {
+        return masterTransactionManager;
+    }
+
+    /**
+     * 主库的事务管理器,须使用sessionFactoryRouter的主库SessionFactory.
+     */
+    public void setMasterTransactionManager(PlatformTransactionManager masterTransactionManager) {
+        this.masterTransactionManager = masterTransactionManager;
+    }
+
+    public long getReadYourWritesWindow() {
+        return readYourWritesWindow;
+    }
+
+    public void setReadYourWritesWindow(long readYourWritesWindow) {
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+
+    /**
+     * 记录一个写事务是否执行过写语句,提交后据此记录写入.
+     */
+    private final class WriteSynchronization extends TransactionSynchronizationAdapter {
+        private final RequestAttributes attributes;
+        private final String key;
+        volatile boolean written;
+
+        WriteSynchronization(RequestAttributes attributes, String key) {
+            this.attributes = attributes;
+            this.key = key;
+        }
+
+        @Override
+        public void afterCommit() {
+            if (!written) return;
+            attributes.setAttribute(WRITTEN_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            if (key != null) markWritten(key);
+        }
+    }
+
+    /**
+     * 记录实际开启事务的事务管理器与开启前的路由,提交或回滚后恢复.
+     */
+    private static final class RoutedTransactionStatus implements TransactionStatus {
+        final TransactionStatus delegate;
+        final PlatformTransactionManager transactionManager;
+        final RoutingContext.Route previousRoute;
+        final SessionFactory previousSessionFactory;
+
+        RoutedTransactionStatus(TransactionStatus delegate, PlatformTransactionManager transactionManager,
+                                RoutingContext.Route previousRoute, SessionFactory previousSessionFactory) {
+            this.delegate = delegate;
+            this.transactionManager = transactionManager;
+            this.previousRoute = previousRoute;
+            this.previousSessionFactory = previousSessionFactory;
+        }
+
+        public boolean isNewTransaction() {
+            return delegate.isNewTransaction();
+        }
+
+        public boolean hasSavepoint() {
+            return delegate.hasSavepoint();
+        }
+
+        public void setRollbackOnly() {
+            delegate.setRollbackOnly();
+        }
+
+        public boolean isRollbackOnly() {
+            return delegate.isRollbackOnly();
+        }
+
+        public void flush() {
+            delegate.flush();
+        }
+
+        public boolean isCompleted() {
+            return delegate.isCompleted();
+        }
+
+        public Object createSavepoint() {
+            return delegate.createSavepoint();
+        }
+
+        public void rollbackToSavepoint(Object savepoint) {
+            delegate.rollbackToSavepoint(savepoint);
+        }
+
+        public void releaseSavepoint(Object savepoint) {
+            delegate.releaseSavepoint(savepoint);
+        }
+    }
+}
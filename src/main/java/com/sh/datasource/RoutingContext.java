@@ -0,0 +1,49 @@
+package com.sh.datasource;
+
+import org.hibernate.SessionFactory;
+
+/**
+ * 当前线程的主从路由,由{@link ReadWriteRoutingTransactionManager}在事务开始时设置,
+ * {@link SessionFactoryRouter}据此返回开启事务的SessionFactory. 未设置时按DAO所在包决定.
+ */
+public final class RoutingContext {
+    /**
+     * 路由目标.
+     */
+    public enum Route {
+        MASTER, REPLICA
+    }
+
+    private static final ThreadLocal<Route> CURRENT = new ThreadLocal<Route>();
+    private static final ThreadLocal<SessionFactory> SESSION_FACTORY = new ThreadLocal<SessionFactory>();
+
+    private RoutingContext() {
+    }
+
+    /**
+     * 取当前线程的路由,未设置时返回null.
+     */
+    public static Route current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 取当前线程的事务所在的SessionFactory,未设置时返回null.
+     */
+    public static SessionFactory currentSessionFactory() {
+        return SESSION_FACTORY.get();
+    }
+
+    /**
+     * 设置当前线程的路由及其SessionFactory,route为null时清除.
+     */
+    static void set(Route route, SessionFactory sessionFactory) {
+        if (route == null) {
+            CURRENT.remove();
+            SESSION_FACTORY.remove();
+        } else {
+            CURRENT.set(route);
+            SESSION_FACTORY.set(sessionFactory);
+        }
+    }
+}
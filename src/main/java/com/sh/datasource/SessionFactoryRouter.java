@@ -0,0 +1,273 @@
+package com.sh.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.orm.hibernate4.SessionFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 主库与多个从库SessionFactory之间的路由.
+ * <p/>
+ * 写操作及写事务中的读操作使用主库,其余读操作按轮询或最小延迟在健康的从库间分配,没有可用从库时使用主库.
+ * 从库的健康状况由后台线程定期取连接校验,校验失败的从库移出轮换,恢复后自动加入.
+ * <p/>
+ * 在{@link ReadWriteRoutingTransactionManager}开启的事务内,所有操作都使用该事务所在的SessionFactory.
+ * 不经GenericDao的DAO(如hedao、hexdao)注入{@link #getRoutingSessionFactory()}返回的代理,
+ * 在路由的事务内同样使用该事务所在的SessionFactory,事务外使用主库.
+ * <p/>
+ * 从库按bean名称配置,容器中不存在的从库被忽略,因此未导入application-slave.xml时所有操作都走主库.
+ */
+public class SessionFactoryRouter implements BeanFactoryAware, InitializingBean, DisposableBean {
+    private static final Log log = LogFactory.getLog(SessionFactoryRouter.class);
+
+    /**
+     * 从库的负载均衡方式.
+     */
+    public enum LoadBalance {
+        ROUND_ROBIN, LEAST_LATENCY
+    }
+
+    private BeanFactory beanFactory;
+    private SessionFactory master;
+    private List<String> replicaNames = Collections.emptyList();
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+    private long healthCheckInterval = 5000; // 健康检查间隔(毫秒),小于等于0时不检查
+    private int validationTimeout = 2; // 校验连接的超时(秒)
+
+    private volatile List<Replica> replicas = Collections.emptyList();
+    private final AtomicInteger counter = new AtomicInteger();
+    private ScheduledExecutorService healthChecker;
+    private SessionFactory routingSessionFactory;
+
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    public void afterPropertiesSet() {
+        Assert.notNull(master, "master SessionFactory is required");
+        List<Replica> list = new ArrayList<Replica>();
+        for (String name : replicaNames) {
+            if (beanFactory == null || !beanFactory.containsBean(name)) {
+                log.warn("replica " + name + " not defined, ignored");
+                continue;
+            }
+            list.add(new Replica(name, beanFactory.getBean(name, SessionFactory.class)));
+        }
+        replicas = Collections.unmodifiableList(list);
+        routingSessionFactory = (SessionFactory) Proxy.newProxyInstance(master.getClass().getClassLoader(),
+                ClassUtils.getAllInterfaces(master), new RoutingInvocationHandler());
+        if (healthCheckInterval > 0 && !replicas.isEmpty()) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "replica-health-check");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            healthChecker.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    checkHealth();
+                }
+            }, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void destroy() {
+        if (healthChecker != null) healthChecker.shutdownNow();
+    }
+
+    /**
+     * 取主库SessionFactory.
+     */
+    public SessionFactory getMaster() {
+        return master;
+    }
+
+    /**
+     * 取路由的SessionFactory代理:处于路由的事务中时把调用转给该事务的SessionFactory,否则转给主库.
+     * 其getCurrentSession()因此总能取到当前事务的Session,供直接注入SessionFactory的DAO使用.
+     */
+    public SessionFactory getRoutingSessionFactory() {
+        return routingSessionFactory;
+    }
+
+    /**
+     * 取DAO使用的SessionFactory. 处于路由的事务中时返回该事务的SessionFactory,否则按DAO的默认选择.
+     *
+     * @param masterDao DAO是否默认使用主库
+     */
+    public SessionFactory getSessionFactory(boolean masterDao) {
+        SessionFactory routed = RoutingContext.currentSessionFactory();
+        if (routed != null) return routed;
+        return masterDao ? master : getReadSessionFactory();
+    }
+
+    /**
+     * 取读操作使用的SessionFactory. 处于路由的事务中时返回该事务的SessionFactory,
+     * 处于写事务中或没有健康的从库时返回主库.
+     */
+    public SessionFactory getReadSessionFactory() {
+        SessionFactory routed = RoutingContext.currentSessionFactory();
+        if (routed != null) return routed;
+        if (isWriteTransaction()) return master;
+        Replica replica = selectReplica();
+        return replica == null ? master : replica.sessionFactory;
+    }
+
+    /**
+     * 当前线程是否处于写事务中.
+     */
+    protected boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private Replica selectReplica() {
+        List<Replica> all = replicas;
+        List<Replica> healthy = new ArrayList<Replica>(all.size());
+        for (Replica replica : all) {
+            if (replica.healthy) healthy.add(replica);
+        }
+        if (healthy.isEmpty()) return null;
+        if (loadBalance == LoadBalance.LEAST_LATENCY) {
+            Replica best = healthy.get(0);
+            for (Replica replica : healthy) {
+                if (replica.latencyNanos < best.latencyNanos) best = replica;
+            }
+            return best;
+        }
+        return healthy.get((counter.getAndIncrement() & Integer.MAX_VALUE) % healthy.size());
+    }
+
+    /**
+     * 校验所有从库的连接,更新其健康状况与延迟.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == null) continue;
+            long begin = System.nanoTime();
+            boolean valid;
+            try {
+                Connection conn = replica.dataSource.getConnection();
+                try {
+                    valid = conn.isValid(validationTimeout);
+                } finally {
+                    conn.close();
+                }
+            } catch (Exception e) {
+                valid = false;
+            }
+            long elapsed = System.nanoTime() - begin;
+            // 延迟取指数加权平均,避免偶发的慢连接影响选择
+            replica.latencyNanos = replica.latencyNanos == 0 ? elapsed : (replica.latencyNanos * 7 + elapsed) / 8;
+            if (replica.healthy != valid) {
+                if (valid) log.info("replica " + replica.name + " is back in rotation");
+                else log.warn("replica " + replica.name + " failed validation, removed from rotation");
+            }
+            replica.healthy = valid;
+        }
+    }
+
+    /**
+     * 把从库移出轮换,直到下次健康检查通过.
+     */
+    public void markDown(SessionFactory sessionFactory) {
+        for (Replica replica : replicas) {
+            if (replica.sessionFactory == sessionFactory) replica.healthy = false;
+        }
+    }
+
+    public void markUp(SessionFactory sessionFactory) {
+        for (Replica replica : replicas) {
+            if (replica.sessionFactory == sessionFactory) replica.healthy = true;
+        }
+    }
+
+    /**
+     * 取各从库的健康状况,以bean名称为键.
+     */
+    public Map<String, Boolean> getReplicaStatus() {
+        Map<String, Boolean> status = new LinkedHashMap<String, Boolean>();
+        for (Replica replica : replicas) {
+            status.put(replica.name, replica.healthy);
+        }
+        return status;
+    }
+
+    public void setMaster(SessionFactory master) {
+        this.master = master;
+    }
+
+    public void setReplicaNames(List<String> replicaNames) {
+        this.replicaNames = replicaNames;
+    }
+
+    public void setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = loadBalance;
+    }
+
+    public void setHealthCheckInterval(long healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public void setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    /**
+     * 路由SessionFactory代理的调用处理,equals、hashCode按代理自身判断.
+     */
+    private final class RoutingInvocationHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (ReflectionUtils.isEqualsMethod(method)) return proxy == args[0];
+            if (ReflectionUtils.isHashCodeMethod(method)) return System.identityHashCode(proxy);
+            if (ReflectionUtils.isToStringMethod(method)) return "Routing SessionFactory of " + master;
+            SessionFactory target = RoutingContext.currentSessionFactory();
+            if (target == null) target = master;
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    private static final class Replica {
+        final String name;
+        final SessionFactory sessionFactory;
+        final DataSource dataSource;
+        volatile boolean healthy = true;
+        volatile long latencyNanos;
+
+        Replica(String name, SessionFactory sessionFactory) {
+            this.name = name;
+            this.sessionFactory = sessionFactory;
+            this.dataSource = SessionFactoryUtils.getDataSource(sessionFactory);
+        }
+    }
+}
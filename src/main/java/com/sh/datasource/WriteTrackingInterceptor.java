@@ -0,0 +1,37 @@
+package com.sh.datasource;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * 向{@link ReadWriteRoutingTransactionManager}报告当前事务执行的写语句,配置为主库SessionFactory的entityInterceptor.
+ * <p/>
+ * 按Hibernate准备的每条语句判断,select以外的语句(包括flush产生的insert、update、delete与批量hql、sql)都算写入,
+ * 因此flush时机、是否经过DAO都不影响判断. 实例无状态,可由所有Session共用.
+ */
+public class WriteTrackingInterceptor extends EmptyInterceptor {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        if (!isQuery(sql)) ReadWriteRoutingTransactionManager.statementWritten();
+        return sql;
+    }
+
+    /**
+     * 跳过开头的空白与注释后是否为select语句.
+     */
+    static boolean isQuery(String sql) {
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || c == '(') i++;
+            else if (sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) return false;
+                i = end + 2;
+            } else break;
+        }
+        return sql.regionMatches(true, i, "select", 0, 6);
+    }
+}
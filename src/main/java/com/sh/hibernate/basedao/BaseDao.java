@@ -5,16 +5,22 @@ import com.sh.hibernate.dao.HibernateGenericDao;
 import com.sh.hibernate.dao.extend.HibernateEntityExtendDao;
 import com.sh.hibernate.dao.extend.IUndeleteableEntityOperation;
 import com.sh.hibernate.dao.support.GenericsUtils;
+import com.sh.hibernate.dao.support.CountMode;
+import com.sh.hibernate.dao.support.CriteriaSpec;
+import com.sh.hibernate.dao.support.KeysetPage;
 import com.sh.hibernate.dao.support.Page;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.Criterion;
 
 import javax.annotation.Resource;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * @author IBaseDao的实现类通过spring注入HibernateEntityDao和HibernateEntityExtendDao来实现
@@ -69,6 +75,15 @@ public class BaseDao<T> implements IBaseDao<T> {
         return hedao.getAll();
     }
 
+    /**
+     * 按主键列表批量获取对象,结果按主键列表的顺序排列.
+     *
+     * @see HibernateGenericDao#getAll(Class, Collection)
+     */
+    public List<T> getAll(Collection<? extends Serializable> ids) {
+        return hedao.getAll(entityClass, ids);
+    }
+
     /**
      * 获取全部对象,带排序参数.
      *
@@ -145,6 +160,16 @@ public class BaseDao<T> implements IBaseDao<T> {
         return hedao.isUnique(entity, uniquePropertyNames);
     }
 
+    /**
+     * 批量判断对象某些属性的值在数据库中唯一,返回不唯一的对象.
+     *
+     * @param uniquePropertyNames 在POJO里不能重复的属性列表,以逗号分割 如"name,loginid,password"
+     * @see HibernateGenericDao#findNotUnique(Class, Collection, String)
+     */
+    public List<T> findNotUnique(Collection<? extends T> entities, String uniquePropertyNames) {
+        return hedao.findNotUnique(entityClass, entities, uniquePropertyNames);
+    }
+
     /**
      * 消除与 Hibernate Session 的关联
      *
@@ -200,6 +225,24 @@ public class BaseDao<T> implements IBaseDao<T> {
         hexdao.remove(entity);
     }
 
+    /**
+     * 按主键批量删除对象，如果是Undeleteable的entity,以一条update语句把状态设为无效.
+     *
+     * @see HibernateEntityExtendDao#removeAll(Class, Collection)
+     */
+    public int removeAllUndeleteable(Collection<? extends Serializable> ids) {
+        return hexdao.removeAll(entityClass, ids);
+    }
+
+    /**
+     * 批量删除符合条件的对象，如果是Undeleteable的entity,把状态设为无效.
+     *
+     * @see HibernateEntityExtendDao#removeWhere(Class, Criterion[])
+     */
+    public int removeWhereUndeleteable(Criterion... criterions) {
+        return hexdao.removeWhere(entityClass, criterions);
+    }
+
     /**
      * 与数据库相关的校验,比如判断名字在数据库里有没有重复, 在保存时被调用,在此可重写.
      *
@@ -265,6 +308,24 @@ public class BaseDao<T> implements IBaseDao<T> {
         hedao.remove(o);
     }
 
+    /**
+     * 批量保存对象,每batchSize个对象flush并clear一次Session.
+     *
+     * @see HibernateGenericDao#saveAll(Iterable, int)
+     */
+    public int saveAll(Iterable<?> entities, int batchSize) {
+        return hedao.saveAll(entities, batchSize);
+    }
+
+    /**
+     * 批量更新游离状态的对象,每batchSize个对象flush并clear一次Session.
+     *
+     * @see HibernateGenericDao#updateAll(Iterable, int)
+     */
+    public int updateAll(Iterable<?> entities, int batchSize) {
+        return hedao.updateAll(entities, batchSize);
+    }
+
     public void flush() {
         hedao.flush();
     }
@@ -323,6 +384,69 @@ public class BaseDao<T> implements IBaseDao<T> {
         return hedao.find(hql, values);
     }
 
+    /**
+     * 执行命名查询,按顺序绑定?参数.
+     *
+     * @see HibernateGenericDao#findByNamedQuery(String, Object...)
+     */
+    public List findByNamedQuery(String queryName, Object... values) {
+        return hedao.findByNamedQuery(queryName, values);
+    }
+
+    /**
+     * 执行命名查询,按名称绑定:name参数.
+     *
+     * @see HibernateGenericDao#findByNamedQuery(String, Map)
+     */
+    public List findByNamedQuery(String queryName, Map<String, ?> params) {
+        return hedao.findByNamedQuery(queryName, params);
+    }
+
+    /**
+     * 投影查询,把hql选出的各列按顺序传给DTO的构造函数,不加载Entity.
+     *
+     * @see HibernateGenericDao#findProjection(Class, String, Object...)
+     */
+    public <D> List<D> findProjection(Class<D> dtoClass, String hql, Object... values) {
+        return hedao.findProjection(dtoClass, hql, values);
+    }
+
+    /**
+     * 以sql执行的投影查询,把选出的各列按顺序传给DTO的构造函数.
+     *
+     * @see HibernateGenericDao#findProjectionBySql(Class, String, Object...)
+     */
+    public <D> List<D> findProjectionBySql(Class<D> dtoClass, String sql, Object... values) {
+        return hedao.findProjectionBySql(dtoClass, sql, values);
+    }
+
+    /**
+     * 以只进游标执行hql查询,使用后须关闭返回的ScrollableResults.
+     *
+     * @see HibernateGenericDao#scroll(String, Object...)
+     */
+    public ScrollableResults scroll(String hql, Object... values) {
+        return hedao.scroll(hql, values);
+    }
+
+    /**
+     * 以只进游标流式读取hql的查询结果,用完后须关闭Stream.
+     *
+     * @see HibernateGenericDao#stream(String, Object...)
+     */
+    public <E> Stream<E> stream(String hql, Object... values) {
+        return hedao.stream(hql, values);
+    }
+
+    /**
+     * 以只进游标流式读取符合条件的对象,用完后须关闭Stream.
+     *
+     * @see HibernateGenericDao#stream(Class, Criterion[])
+     */
+    public Stream<T> stream(Criterion... criterions) {
+        return hedao.stream(entityClass, criterions);
+    }
+
     /**
      * 根据属性名和属性值查询对象.
      *
@@ -371,6 +495,26 @@ public class BaseDao<T> implements IBaseDao<T> {
         return hedao.dataQuery(hql, start, pageSize, values);
     }
 
+    /**
+     * 分页查询函数，使用hql,可指定总记录数的取得方式.
+     *
+     * @param pageNo    页号,从1开始.
+     * @param countMode count查询方式,见{@link CountMode}
+     */
+    public Page pagedQuery(String hql, int pageNo, int pageSize, CountMode countMode, Object... values) {
+        return hedao.pagedQuery(hql, pageNo, pageSize, countMode, values);
+    }
+
+    /**
+     * 从指定位置开始的分页查询,可指定总记录数的取得方式.
+     *
+     * @param start     分页从哪一条数据开始
+     * @param countMode count查询方式,见{@link CountMode}
+     */
+    public Page dataQuery(String hql, int start, int pageSize, CountMode countMode, Object... values) {
+        return hedao.dataQuery(hql, start, pageSize, countMode, values);
+    }
+
     /**
      * 分页查询函数，使用已设好查询条件与排序的<code>Criteria</code>.
      *
@@ -381,22 +525,50 @@ public class BaseDao<T> implements IBaseDao<T> {
         return hedao.pagedQuery(criteria, pageNo, pageSize);
     }
 
+    /**
+     * 分页查询函数，由可重用的查询定义分别生成count查询与数据查询.
+     *
+     * @param pageNo 页号,从1开始.
+     * @return 含总记录数和当前页数据的Page对象.
+     */
+    public Page<T> pagedQuery(CriteriaSpec<T> spec, int pageNo, int pageSize) {
+        return hedao.pagedQuery(spec, pageNo, pageSize);
+    }
+
     /**
      * 分页查询函数，根据entityClass和查询条件参数创建默认的<code>Criteria</code>.
      *
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
      */
-    @SuppressWarnings("unchecked")
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, Criterion... criterions) {
+    public Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, Criterion... criterions) {
         return hedao.pagedQuery(entityClass, pageNo, pageSize, criterions);
     }
 
-    @SuppressWarnings("unchecked")
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions) {
+    public Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions) {
         return hedao.pagedQuery(entityClass, pageNo, pageSize, orderBy, isAsc, criterions);
     }
 
+    /**
+     * 键集分页(seek)查询函数,按单个排序属性定位下一页.
+     *
+     * @param lastKey 上一页最后一条记录的排序属性值,取第一页时为null
+     * @see HibernateGenericDao#seekQuery(Class, int, String, boolean, Object, Criterion[])
+     */
+    public KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String sortProperty, boolean isAsc, Object lastKey, Criterion... criterions) {
+        return hedao.seekQuery(entityClass, pageSize, sortProperty, isAsc, lastKey, criterions);
+    }
+
+    /**
+     * 键集分页(seek)查询函数,以上一页最后一条记录的排序键为起点取下一页,不执行count查询.
+     *
+     * @param lastKeys 上一页的{@link KeysetPage#getNextKeys()},取第一页时为null
+     * @see HibernateGenericDao#seekQuery(Class, int, String[], boolean, Object[], Criterion[])
+     */
+    public KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String[] sortProperties, boolean isAsc, Object[] lastKeys, Criterion... criterions) {
+        return hedao.seekQuery(entityClass, pageSize, sortProperties, isAsc, lastKeys, criterions);
+    }
+
     /**
      * 判断对象某些属性的值在数据库中是否唯一.
      *
@@ -3,15 +3,21 @@ package com.sh.hibernate.basedao;
 import com.sh.hibernate.dao.HibernateEntityDao;
 import com.sh.hibernate.dao.HibernateGenericDao;
 import com.sh.hibernate.dao.extend.IUndeleteableEntityOperation;
+import com.sh.hibernate.dao.support.CountMode;
+import com.sh.hibernate.dao.support.CriteriaSpec;
+import com.sh.hibernate.dao.support.KeysetPage;
 import com.sh.hibernate.dao.support.Page;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollableResults;
 import org.hibernate.criterion.Criterion;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * @author 提供hibernate dao的所有操作,
@@ -33,6 +39,13 @@ public interface IBaseDao<T> {
      */
     public List<T> getAll();
 
+    /**
+     * 按主键列表批量获取对象,结果按主键列表的顺序排列.
+     *
+     * @see HibernateGenericDao#getAll(Class, Collection)
+     */
+    public List<T> getAll(Collection<? extends Serializable> ids);
+
     /**
      * 获取全部对象,带排序参数.
      *
@@ -93,6 +106,14 @@ public interface IBaseDao<T> {
      */
     public boolean isUnique(Object entity, String uniquePropertyNames);
 
+    /**
+     * 批量判断对象某些属性的值在数据库中唯一,返回不唯一的对象.
+     *
+     * @param uniquePropertyNames 在POJO里不能重复的属性列表,以逗号分割 如"name,loginid,password"
+     * @see HibernateGenericDao#findNotUnique(Class, Collection, String)
+     */
+    public List<T> findNotUnique(Collection<? extends T> entities, String uniquePropertyNames);
+
     /**
      * 消除与 Hibernate Session 的关联
      *
@@ -138,6 +159,20 @@ public interface IBaseDao<T> {
      */
     public void removeUndeleteable(Object entity);
 
+    /**
+     * 按主键批量删除对象，如果是Undeleteable的entity,以一条update语句把状态设为无效.
+     *
+     * @see IUndeleteableEntityOperation#removeAll(Collection)
+     */
+    public int removeAllUndeleteable(Collection<? extends Serializable> ids);
+
+    /**
+     * 批量删除符合条件的对象，如果是Undeleteable的entity,把状态设为无效.
+     *
+     * @see IUndeleteableEntityOperation#removeWhere(Criterion[])
+     */
+    public int removeWhereUndeleteable(Criterion... criterions);
+
     /**
      * 与数据库相关的校验,比如判断名字在数据库里有没有重复, 在保存时被调用,在子类重载.
      *
@@ -188,6 +223,20 @@ public interface IBaseDao<T> {
      */
     public void remove(Object o);
 
+    /**
+     * 批量保存对象,每batchSize个对象flush并clear一次Session.
+     *
+     * @see HibernateGenericDao#saveAll(Iterable, int)
+     */
+    public int saveAll(Iterable<?> entities, int batchSize);
+
+    /**
+     * 批量更新游离状态的对象,每batchSize个对象flush并clear一次Session.
+     *
+     * @see HibernateGenericDao#updateAll(Iterable, int)
+     */
+    public int updateAll(Iterable<?> entities, int batchSize);
+
     public void flush();
 
     public void clear();
@@ -232,6 +281,55 @@ public interface IBaseDao<T> {
     @SuppressWarnings("unchecked")
     public List find(String hql, Object... values);
 
+    /**
+     * 执行命名查询,按顺序绑定?参数.
+     *
+     * @see HibernateGenericDao#findByNamedQuery(String, Object...)
+     */
+    public List findByNamedQuery(String queryName, Object... values);
+
+    /**
+     * 执行命名查询,按名称绑定:name参数.
+     *
+     * @see HibernateGenericDao#findByNamedQuery(String, Map)
+     */
+    public List findByNamedQuery(String queryName, Map<String, ?> params);
+
+    /**
+     * 投影查询,把hql选出的各列按顺序传给DTO的构造函数,不加载Entity.
+     *
+     * @see HibernateGenericDao#findProjection(Class, String, Object...)
+     */
+    public <D> List<D> findProjection(Class<D> dtoClass, String hql, Object... values);
+
+    /**
+     * 以sql执行的投影查询,把选出的各列按顺序传给DTO的构造函数.
+     *
+     * @see HibernateGenericDao#findProjectionBySql(Class, String, Object...)
+     */
+    public <D> List<D> findProjectionBySql(Class<D> dtoClass, String sql, Object... values);
+
+    /**
+     * 以只进游标执行hql查询,使用后须关闭返回的ScrollableResults.
+     *
+     * @see HibernateGenericDao#scroll(String, Object...)
+     */
+    public ScrollableResults scroll(String hql, Object... values);
+
+    /**
+     * 以只进游标流式读取hql的查询结果,用完后须关闭Stream.
+     *
+     * @see HibernateGenericDao#stream(String, Object...)
+     */
+    public <E> Stream<E> stream(String hql, Object... values);
+
+    /**
+     * 以只进游标流式读取符合条件的对象,用完后须关闭Stream.
+     *
+     * @see HibernateGenericDao#stream(Class, Criterion[])
+     */
+    public Stream<T> stream(Criterion... criterions);
+
     /**
      * 根据属性名和属性值查询对象.
      *
@@ -269,6 +367,22 @@ public interface IBaseDao<T> {
      */
     public Page dataQuery(String hql, int start, int pageSize, Object... values);
 
+    /**
+     * 分页查询函数，使用hql,可指定总记录数的取得方式.
+     *
+     * @param pageNo    页号,从1开始.
+     * @param countMode count查询方式,见{@link CountMode}
+     */
+    public Page pagedQuery(String hql, int pageNo, int pageSize, CountMode countMode, Object... values);
+
+    /**
+     * 从指定位置开始的分页查询,可指定总记录数的取得方式.
+     *
+     * @param start     分页从哪一条数据开始
+     * @param countMode count查询方式,见{@link CountMode}
+     */
+    public Page dataQuery(String hql, int start, int pageSize, CountMode countMode, Object... values);
+
     /**
      * 分页查询函数，使用已设好查询条件与排序的<code>Criteria</code>.
      *
@@ -277,14 +391,21 @@ public interface IBaseDao<T> {
      */
     public Page pagedQuery(Criteria criteria, int pageNo, int pageSize);
 
+    /**
+     * 分页查询函数，由可重用的查询定义分别生成count查询与数据查询.
+     *
+     * @param pageNo 页号,从1开始.
+     * @return 含总记录数和当前页数据的Page对象.
+     */
+    public Page<T> pagedQuery(CriteriaSpec<T> spec, int pageNo, int pageSize);
+
     /**
      * 分页查询函数，根据entityClass和查询条件参数创建默认的<code>Criteria</code>.
      *
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
      */
-    @SuppressWarnings("unchecked")
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, Criterion... criterions);
+    public Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, Criterion... criterions);
 
     /**
      * 分页查询函数，根据entityClass和查询条件参数,排序参数创建默认的<code>Criteria</code>.
@@ -292,8 +413,23 @@ public interface IBaseDao<T> {
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
      */
-    @SuppressWarnings("unchecked")
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions);
+    public Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions);
+
+    /**
+     * 键集分页(seek)查询函数,按单个排序属性定位下一页.
+     *
+     * @param lastKey 上一页最后一条记录的排序属性值,取第一页时为null
+     * @see HibernateGenericDao#seekQuery(Class, int, String, boolean, Object, Criterion[])
+     */
+    public KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String sortProperty, boolean isAsc, Object lastKey, Criterion... criterions);
+
+    /**
+     * 键集分页(seek)查询函数,以上一页最后一条记录的排序键为起点取下一页,不执行count查询.
+     *
+     * @param lastKeys 上一页的{@link KeysetPage#getNextKeys()},取第一页时为null
+     * @see HibernateGenericDao#seekQuery(Class, int, String[], boolean, Object[], Criterion[])
+     */
+    public KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String[] sortProperties, boolean isAsc, Object[] lastKeys, Criterion... criterions);
 
     /**
      * 判断对象某些属性的值在数据库中是否唯一.
@@ -0,0 +1,187 @@
+package com.sh.hibernate.dao;
+
+import com.sh.hibernate.dao.support.CountMode;
+import com.sh.hibernate.dao.support.Page;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.criterion.Criterion;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * HibernateGenericDao的异步门面,查询在独立的JDBC线程池中执行并返回CompletableFuture,不占用请求线程.
+ * <p/>
+ * 每个任务在工作线程上开启自己的只读事务,由transactionManager打开新的Session并绑定到该线程,任务结束即关闭,
+ * 因此相互独立的查询可以并行执行后再合并结果:
+ * <pre>
+ * CompletableFuture&lt;Page&gt; page = asyncDao.pagedQuery("from Users", 1, 20);
+ * CompletableFuture&lt;List&lt;Teacher&gt;&gt; teachers = asyncDao.getAll(Teacher.class);
+ * page.thenCombine(teachers, (p, t) -&gt; ...);
+ * </pre>
+ * 返回的对象在Session关闭后才被使用,需要的延迟加载属性须在{@link #query(Function)}中先行初始化.
+ * executor应当有界且线程数小于连接池大小,队列满时返回的Future以RejectedExecutionException失败,而不是退回请求线程执行.
+ *
+ * @see HibernateGenericDao
+ */
+@SuppressWarnings("unchecked")
+public class AsyncDao implements InitializingBean {
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private HibernateGenericDao dao;
+    private PlatformTransactionManager transactionManager;
+    private Executor executor;
+    private int timeout = TransactionDefinition.TIMEOUT_DEFAULT; // 事务超时秒数
+
+    private TransactionTemplate readOnlyTemplate;
+
+    public void afterPropertiesSet() {
+        Assert.notNull(dao, "dao is required");
+        Assert.notNull(transactionManager, "transactionManager is required");
+        Assert.notNull(executor, "executor is required");
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        readOnlyTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readOnlyTemplate.setTimeout(timeout);
+    }
+
+    /**
+     * 在JDBC线程池的只读事务中执行任意DAO操作.
+     */
+    public <R> CompletableFuture<R> query(final Function<? super HibernateGenericDao, R> work) {
+        Assert.notNull(work);
+        try {
+            return CompletableFuture.supplyAsync(() -> readOnlyTemplate.execute(status -> work.apply(dao)), executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("JDBC executor saturated, query rejected");
+            CompletableFuture<R> future = new CompletableFuture<R>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * @see HibernateGenericDao#get(Class, Serializable)
+     */
+    public <T> CompletableFuture<T> get(final Class<T> entityClass, final Serializable id) {
+        return query(dao -> dao.get(entityClass, id));
+    }
+
+    /**
+     * @see HibernateGenericDao#getAll(Class)
+     */
+    public <T> CompletableFuture<List<T>> getAll(final Class<T> entityClass) {
+        return query(dao -> dao.getAll(entityClass));
+    }
+
+    /**
+     * @see HibernateGenericDao#getAll(Class, String, boolean)
+     */
+    public <T> CompletableFuture<List<T>> getAll(final Class<T> entityClass, final String orderBy, final boolean isAsc) {
+        return query(dao -> dao.getAll(entityClass, orderBy, isAsc));
+    }
+
+    /**
+     * @see HibernateGenericDao#find(String, Object...)
+     */
+    public CompletableFuture<List> find(final String hql, final Object... values) {
+        return query(dao -> dao.find(hql, values));
+    }
+
+    /**
+     * @see HibernateGenericDao#findBy(Class, String, Object)
+     */
+    public <T> CompletableFuture<List<T>> findBy(final Class<T> entityClass, final String propertyName, final Object value) {
+        return query(dao -> dao.findBy(entityClass, propertyName, value));
+    }
+
+    /**
+     * @see HibernateGenericDao#findUniqueBy(Class, String, Object)
+     */
+    public <T> CompletableFuture<T> findUniqueBy(final Class<T> entityClass, final String propertyName, final Object value) {
+        return query(dao -> dao.findUniqueBy(entityClass, propertyName, value));
+    }
+
+    /**
+     * @see HibernateGenericDao#findByNamedQuery(String, Map)
+     */
+    public CompletableFuture<List> findByNamedQuery(final String queryName, final Map<String, ?> params) {
+        return query(dao -> dao.findByNamedQuery(queryName, params));
+    }
+
+    /**
+     * @see HibernateGenericDao#findProjection(Class, String, Object...)
+     */
+    public <D> CompletableFuture<List<D>> findProjection(final Class<D> dtoClass, final String hql, final Object... values) {
+        return query(dao -> dao.findProjection(dtoClass, hql, values));
+    }
+
+    /**
+     * @see HibernateGenericDao#pagedQuery(String, int, int, Object...)
+     */
+    public CompletableFuture<Page> pagedQuery(final String hql, final int pageNo, final int pageSize, final Object... values) {
+        return query(dao -> dao.pagedQuery(hql, pageNo, pageSize, values));
+    }
+
+    /**
+     * @see HibernateGenericDao#pagedQuery(String, int, int, CountMode, Object...)
+     */
+    public CompletableFuture<Page> pagedQuery(final String hql, final int pageNo, final int pageSize, final CountMode countMode, final Object... values) {
+        return query(dao -> dao.pagedQuery(hql, pageNo, pageSize, countMode, values));
+    }
+
+    /**
+     * @see HibernateGenericDao#pagedQuery(Class, int, int, Criterion...)
+     */
+    public <T> CompletableFuture<Page<T>> pagedQuery(final Class<T> entityClass, final int pageNo, final int pageSize, final Criterion... criterions) {
+        return query(dao -> dao.pagedQuery(entityClass, pageNo, pageSize, criterions));
+    }
+
+    public HibernateGenericDao getDao() {
+        return dao;
+    }
+
+    public void setDao(HibernateGenericDao dao) {
+        this.dao = dao;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    /**
+     * 须与dao使用同一个SessionFactory.
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 设置每个查询事务的超时秒数.
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+}
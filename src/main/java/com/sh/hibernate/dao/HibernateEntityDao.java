@@ -1,11 +1,14 @@
 package com.sh.hibernate.dao;
 
 import com.sh.hibernate.dao.support.GenericsUtils;
+import com.sh.hibernate.dao.support.KeysetPage;
+import com.sh.hibernate.dao.support.Page;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
 import org.springframework.stereotype.Repository;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -69,6 +72,15 @@ public class HibernateEntityDao<T> extends HibernateGenericDao implements IEntit
         return getAll(getEntityClass());
     }
 
+    /**
+     * 按主键列表批量获取对象,结果按主键列表的顺序排列.
+     *
+     * @see HibernateGenericDao#getAll(Class, Collection)
+     */
+    public List<T> getAll(Collection<? extends Serializable> ids) {
+        return getAll(getEntityClass(), ids);
+    }
+
     /**
      * 获取全部对象,带排序参数.
      *
@@ -135,6 +147,36 @@ public class HibernateEntityDao<T> extends HibernateGenericDao implements IEntit
         return findUniqueBy(getEntityClass(), propertyName, value);
     }
 
+    /**
+     * 分页查询函数,根据查询条件参数创建默认的查询定义.
+     *
+     * @param pageNo 页号,从1开始.
+     * @see HibernateGenericDao#pagedQuery(Class, int, int, Criterion[])
+     */
+    public Page<T> pagedQuery(int pageNo, int pageSize, Criterion... criterions) {
+        return pagedQuery(getEntityClass(), pageNo, pageSize, criterions);
+    }
+
+    /**
+     * 分页查询函数,根据查询条件参数,排序参数创建默认的查询定义.
+     *
+     * @param pageNo 页号,从1开始.
+     * @see HibernateGenericDao#pagedQuery(Class, int, int, String, boolean, Criterion[])
+     */
+    public Page<T> pagedQuery(int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions) {
+        return pagedQuery(getEntityClass(), pageNo, pageSize, orderBy, isAsc, criterions);
+    }
+
+    /**
+     * 键集分页(seek)查询函数.
+     *
+     * @param lastKeys 上一页的{@link KeysetPage#getNextKeys()},取第一页时为null
+     * @see HibernateGenericDao#seekQuery(Class, int, String[], boolean, Object[], Criterion[])
+     */
+    public KeysetPage<T> seekQuery(int pageSize, String[] sortProperties, boolean isAsc, Object[] lastKeys, Criterion... criterions) {
+        return seekQuery(getEntityClass(), pageSize, sortProperties, isAsc, lastKeys, criterions);
+    }
+
     /**
      * 判断对象某些属性的值在数据库中唯一.
      *
@@ -145,6 +187,16 @@ public class HibernateEntityDao<T> extends HibernateGenericDao implements IEntit
         return isUnique(getEntityClass(), entity, uniquePropertyNames);
     }
 
+    /**
+     * 批量判断对象某些属性的值在数据库中唯一,返回不唯一的对象.
+     *
+     * @param uniquePropertyNames 在POJO里不能重复的属性列表,以逗号分割 如"name,loginid,password"
+     * @see HibernateGenericDao#findNotUnique(Class, Collection, String)
+     */
+    public List<T> findNotUnique(Collection<? extends T> entities, String uniquePropertyNames) {
+        return findNotUnique(getEntityClass(), entities, uniquePropertyNames);
+    }
+
     /**
      * 消除与 Hibernate Session 的关联
      *
@@ -1,23 +1,63 @@
 package com.sh.hibernate.dao;
 
-import com.sh.hibernate.dao.support.BeanUtils;
+import com.sh.hibernate.dao.support.BatchStatistics;
+import com.sh.hibernate.dao.support.ConstructorResultTransformer;
+import com.sh.hibernate.dao.support.CountMode;
+import com.sh.hibernate.dao.support.CriteriaSpec;
+import com.sh.hibernate.dao.support.DaoMetrics;
+import com.sh.hibernate.dao.support.EntityMetadata;
+import com.sh.hibernate.dao.support.HqlParser;
+import com.sh.hibernate.dao.support.KeysetPage;
 import com.sh.hibernate.dao.support.Page;
-import org.apache.commons.beanutils.PropertyUtils;
+import com.sh.hibernate.dao.support.QueryResultCache;
+import com.sh.hibernate.dao.support.ScrollIterator;
+import org.hibernate.Cache;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.*;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.CriteriaImpl;
-import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
 import org.springframework.orm.hibernate4.support.HibernateDaoSupport;
 import org.springframework.util.Assert;
 import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Hibernate Dao的泛型基类.
@@ -31,46 +71,118 @@ import java.util.regex.Pattern;
 @SuppressWarnings("unchecked")
 public class HibernateGenericDao extends HibernateDaoSupport {
     /**
-     * 去除hql的select 子句，未考虑union的情况,用于pagedQuery.
-     *
-     * @see #pagedQuery(String, int, int, Object[])
+     * 批量写入的吞吐统计.
      */
-    private static String removeSelect(String hql) {
-        Assert.hasText(hql);
-        int beginPos = hql.toLowerCase().indexOf("from");
-        Assert.isTrue(beginPos != -1, " hql : " + hql + " must has a keyword 'from'");
-        return hql.substring(beginPos);
-    }
+    private final BatchStatistics batchStatistics = new BatchStatistics();
 
     /**
-     * 去除hql的orderby 子句，用于pagedQuery.
-     *
-     * @see #pagedQuery(String, int, int, Object[])
+     * in条件中参数个数的默认上限,超出时分段执行.
      */
-    private static String removeOrders(String hql) {
-        Assert.hasText(hql);
-        Pattern p = Pattern.compile("order//s*by[//w|//W|//s|//S]*", Pattern.CASE_INSENSITIVE);
-        Matcher m = p.matcher(hql);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            m.appendReplacement(sb, "");
-        }
-        m.appendTail(sb);
-        return sb.toString();
-    }
+    public static final int DEFAULT_IN_CLAUSE_SIZE = 500;
+
+    /**
+     * findNotUnique每条查询检查的对象个数. 每个对象在查询中占一个投影列与一组条件,不宜过多.
+     */
+    public static final int UNIQUE_CHECK_BATCH_SIZE = 100;
+
+    private int inClauseSize = DEFAULT_IN_CLAUSE_SIZE;
+
+    /**
+     * 游标查询每次从数据库取的行数.
+     * <p/>
+     * MySQL Connector/J默认忽略正数的fetchSize,把整个结果集读入内存. 须在连接url中加useCursorFetch=true,
+     * 驱动才以服务端游标按fetchSize分批读取(见master.properties). 也可把fetchSize设为Integer.MIN_VALUE逐行读取,
+     * 但在结果集读完或关闭之前,该连接不能执行其他语句,同一事务中的延迟加载等都会失败.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * findBy、findUniqueBy、getAll等查询的结果缓存,以及CountMode.CACHED的count缓存.
+     * 默认的实例没有登记任何Entity类型,只缓存count.
+     */
+    private QueryResultCache queryResultCache = new QueryResultCache();
+
+    /**
+     * 执行异步count查询的线程池,使用CountMode.ASYNC时必须设置.
+     */
+    private Executor countExecutor;
+
+    /**
+     * Entity映射信息的缓存. 主从库的映射相同,经路由的SessionFactory时各库共用一份.
+     */
+    private final ConcurrentMap<Class, EntityMetadata> entityMetadata = new ConcurrentHashMap<Class, EntityMetadata>();
+
+    /**
+     * 各操作的耗时、行数统计与慢查询日志,为null时不统计.
+     */
+    private DaoMetrics daoMetrics;
 
     /**
      * 根据ID获取对象. 实际调用Hibernate的session.load()方法返回实体或其proxy对象. 如果对象不存在，抛出异常.
      */
     public <T> T get(Class<T> entityClass, Serializable id) {
-        return (T) getHibernateTemplate().load(entityClass, id);
+        // load()通常只返回未初始化的proxy,耗时不含数据库访问,统计名为load以免与真正的查询混淆
+        return timed(entityClass, "load", () -> (T) getHibernateTemplate().load(entityClass, id));
     }
 
     /**
      * 获取全部对象.
      */
     public <T> List<T> getAll(Class<T> entityClass) {
-        return getHibernateTemplate().loadAll(entityClass);
+        return timed(entityClass, "getAll", () -> cachedQuery(entityClass, () -> getHibernateTemplate().loadAll(entityClass), "getAll"));
+    }
+
+    /**
+     * 按主键列表批量获取对象,结果按主键列表的顺序排列,重复的主键只取一次,不存在的主键被忽略.
+     * 主键值先转换为映射的主键类型,如Long主键可传入Integer.
+     * <p/>
+     * 已在Session或二级缓存中的对象直接取出,其余主键按{@link #getInClauseSize()}分段以in查询读取,
+     * N次查询变为N/分段大小次.
+     */
+    public <T> List<T> getAll(Class<T> entityClass, Collection<? extends Serializable> ids) {
+        Assert.notNull(entityClass);
+        Assert.notNull(ids);
+        return timed(entityClass, "getAllById", () -> loadAll(entityClass, ids));
+    }
+
+    private <T> List<T> loadAll(Class<T> entityClass, Collection<? extends Serializable> ids) {
+        List<T> result = new ArrayList<T>(ids.size());
+        if (ids.isEmpty()) return result;
+        Session session = getSessionFactory().getCurrentSession();
+        Cache cache = getSessionFactory().getCache();
+        EntityMetadata metadata = getEntityMetadata(entityClass);
+        Set<Serializable> distinctIds = new LinkedHashSet<Serializable>(ids.size());
+        for (Serializable id : ids) {
+            if (id != null) distinctIds.add(metadata.toIdentifier(id));
+        }
+        Map<Serializable, T> found = new HashMap<Serializable, T>();
+        List<Serializable> missing = new ArrayList<Serializable>();
+        for (Serializable id : distinctIds) {
+            Object entity = getLoadedEntity(session, entityClass, id);
+            if (entity == null && cache.containsEntity(entityClass, id)) entity = session.get(entityClass, id);
+            if (entity != null) found.put(id, (T) entity);
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            String idName = getIdName(entityClass);
+            try {
+                for (List<Serializable> chunk : partition(missing, inClauseSize)) {
+                    List<T> list = createCriteria(entityClass, Restrictions.in(idName, chunk)).list();
+                    for (T entity : list) {
+                        found.put(metadata.getId(entity), entity);
+                    }
+                }
+            } catch (Exception e) {
+                ReflectionUtils.handleReflectionException(e);
+            }
+        }
+        for (Serializable id : distinctIds) {
+            T entity = found.get(id);
+            if (entity != null) result.add(entity);
+        }
+        return result;
     }
 
     /**
@@ -78,24 +190,33 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      */
     public <T> List<T> getAll(Class<T> entityClass, String orderBy, boolean isAsc) {
         Assert.hasText(orderBy);
-        if (isAsc)
-            return (List<T>) getHibernateTemplate().findByCriteria(DetachedCriteria.forClass(entityClass).addOrder(Order.asc(orderBy)));
-        else
-            return (List<T>) getHibernateTemplate().findByCriteria(DetachedCriteria.forClass(entityClass).addOrder(Order.desc(orderBy)));
+        DetachedCriteria criteria = DetachedCriteria.forClass(entityClass).addOrder(isAsc ? Order.asc(orderBy) : Order.desc(orderBy));
+        return timed(entityClass, "getAll",
+                () -> cachedQuery(entityClass, () -> (List<T>) getHibernateTemplate().findByCriteria(criteria), "getAll", orderBy, isAsc));
     }
 
     /**
      * 保存对象.
      */
     public void save(Object o) {
-        getHibernateTemplate().saveOrUpdate(o);
+        Class entityClass = Hibernate.getClass(o);
+        timed(entityClass, "save", () -> {
+            getHibernateTemplate().saveOrUpdate(o);
+            return o;
+        });
+        invalidateQueryCache(entityClass);
     }
 
     /**
      * 删除对象.
      */
     public void remove(Object o) {
-        getHibernateTemplate().delete(o);
+        Class entityClass = Hibernate.getClass(o);
+        timed(entityClass, "remove", () -> {
+            getHibernateTemplate().delete(o);
+            return o;
+        });
+        invalidateQueryCache(entityClass);
     }
 
     /**
@@ -105,6 +226,299 @@ public class HibernateGenericDao extends HibernateDaoSupport {
         remove(get(entityClass, id));
     }
 
+    /**
+     * 批量保存对象. 每batchSize个对象flush并clear一次Session,插入与更新按JDBC批量执行,一级缓存也不会随数据量增长.
+     * <p/>
+     * batchSize应与hibernate.jdbc.batch_size一致. 开始前会先flush当前Session,
+     * 执行后Session中原有的对象均变为游离状态. 主键为IDENTITY的实体,Hibernate不会批量执行其插入.
+     *
+     * @param entities  要保存的对象
+     * @param batchSize 每批的对象个数
+     * @return 保存的对象个数
+     */
+    public int saveAll(Iterable<?> entities, int batchSize) {
+        return saveAll(entities, batchSize, false);
+    }
+
+    /**
+     * 批量保存对象,可选择使用StatelessSession.
+     * <p/>
+     * StatelessSession与当前Session共用数据库连接和事务,不经过一级缓存、级联与脏检查,内存占用不随数据量增长,
+     * 但也不会调用{@link #save(Object)}的重载逻辑. Hibernate 4.2的StatelessSession逐条执行,不使用JDBC批量.
+     *
+     * @param stateless 是否使用StatelessSession
+     * @see #saveAll(Iterable, int)
+     */
+    public int saveAll(Iterable<?> entities, int batchSize, boolean stateless) {
+        return timed(batchEntity(entities), "saveAll", null, null, () -> stateless ? statelessWrite(entities, false) : batchWrite(entities, batchSize, false));
+    }
+
+    /**
+     * 批量更新游离状态的对象.
+     *
+     * @see #saveAll(Iterable, int)
+     */
+    public int updateAll(Iterable<?> entities, int batchSize) {
+        return updateAll(entities, batchSize, false);
+    }
+
+    /**
+     * 批量更新游离状态的对象,可选择使用StatelessSession.
+     *
+     * @see #saveAll(Iterable, int, boolean)
+     */
+    public int updateAll(Iterable<?> entities, int batchSize, boolean stateless) {
+        return timed(batchEntity(entities), "updateAll", null, null, () -> stateless ? statelessWrite(entities, true) : batchWrite(entities, batchSize, true));
+    }
+
+    private int batchWrite(Iterable<?> entities, int batchSize, boolean update) {
+        Assert.notNull(entities);
+        Assert.isTrue(batchSize > 0, "batchSize should be positive");
+        long begin = System.nanoTime();
+        Session session = getSessionFactory().getCurrentSession();
+        // 先写入Session中已有的修改,避免被之后的clear丢弃
+        session.flush();
+        int count = 0;
+        int batches = 0;
+        for (Object entity : entities) {
+            if (update) {
+                session.update(entity);
+                invalidateQueryCache(Hibernate.getClass(entity));
+            } else save(entity);
+            if (++count % batchSize == 0) {
+                session.flush();
+                session.clear();
+                batches++;
+            }
+        }
+        if (count % batchSize != 0) {
+            session.flush();
+            session.clear();
+            batches++;
+        }
+        batchStatistics.record(count, batches, System.nanoTime() - begin);
+        return count;
+    }
+
+    private int statelessWrite(Iterable<?> entities, boolean update) {
+        Assert.notNull(entities);
+        long begin = System.nanoTime();
+        Session session = getSessionFactory().getCurrentSession();
+        session.flush();
+        StatelessSession stateless = getSessionFactory().openStatelessSession(((SessionImplementor) session).connection());
+        int count = 0;
+        try {
+            for (Object entity : entities) {
+                if (update) stateless.update(entity);
+                else stateless.insert(entity);
+                invalidateQueryCache(Hibernate.getClass(entity));
+                count++;
+            }
+        } finally {
+            stateless.close();
+        }
+        batchStatistics.record(count, count, System.nanoTime() - begin);
+        return count;
+    }
+
+    /**
+     * 取批量写入的吞吐统计.
+     */
+    public BatchStatistics getBatchStatistics() {
+        return batchStatistics;
+    }
+
+    /**
+     * 取SessionFactory的统计,需设置hibernate.generate_statistics=true才会采集.
+     */
+    public Statistics getStatistics() {
+        return getSessionFactory().getStatistics();
+    }
+
+    /**
+     * 取各二级缓存region的命中、未命中、写入次数等统计,以region名为键.
+     */
+    public Map<String, SecondLevelCacheStatistics> getCacheStatistics() {
+        Statistics statistics = getStatistics();
+        Map<String, SecondLevelCacheStatistics> result = new LinkedHashMap<String, SecondLevelCacheStatistics>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            result.put(region, statistics.getSecondLevelCacheStatistics(region));
+        }
+        return result;
+    }
+
+    /**
+     * 取查询结果缓存.
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * 设置查询结果缓存,可由多个DAO共用同一实例,使任一DAO的写操作都能使其他DAO缓存的查询结果与count失效.
+     *
+     * @see QueryResultCache
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        Assert.notNull(queryResultCache);
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * 经查询结果缓存执行返回entityClass对象(或其List)的查询,Entity类型不可缓存时直接执行.
+     * <p/>
+     * 缓存中只保存主键,命中时按主键在当前Session中取出对象(先查Session与二级缓存,其余以in查询批量读取),
+     * 各Session不会共用同一个Entity实例. 缓存后被删除的对象不再返回.
+     */
+    protected <R> R cachedQuery(Class entityClass, Supplier<R> query, Object... shape) {
+        if (!queryResultCache.isCacheable(entityClass)) return query.get();
+        Object ids = queryResultCache.get(entityClass, () -> toCachedIds(entityClass, query.get()), shape);
+        if (ids == null) return null;
+        if (ids instanceof CachedId) return (R) getHibernateTemplate().get(entityClass, ((CachedId) ids).id);
+        return (R) getAll(entityClass, (List<Serializable>) ids);
+    }
+
+    private Object toCachedIds(Class entityClass, Object result) {
+        if (result == null) return null;
+        EntityMetadata metadata = getEntityMetadata(entityClass);
+        if (result instanceof List) {
+            List<Serializable> ids = new ArrayList<Serializable>(((List) result).size());
+            for (Object entity : (List) result) {
+                ids.add(metadata.getId(entity));
+            }
+            return ids;
+        }
+        return new CachedId(metadata.getId(result));
+    }
+
+    /**
+     * 单个对象查询结果在缓存中的形式,与List结果区分.
+     */
+    private static final class CachedId {
+        final Serializable id;
+
+        CachedId(Serializable id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 在当前事务提交后使Entity类型的查询结果缓存及count缓存失效,没有事务时立即失效.
+     */
+    protected void invalidateQueryCache(Class entityClass) {
+        queryResultCache.invalidateOnCommit(entityClass);
+    }
+
+    /**
+     * 取DAO操作的统计,未设置时返回null.
+     */
+    public DaoMetrics getDaoMetrics() {
+        return daoMetrics;
+    }
+
+    /**
+     * 设置DAO操作的统计,可由多个DAO共用同一实例.
+     *
+     * @see DaoMetrics
+     */
+    public void setDaoMetrics(DaoMetrics daoMetrics) {
+        this.daoMetrics = daoMetrics;
+    }
+
+    /**
+     * 执行并统计Entity上的操作,未设置daoMetrics时直接执行.
+     */
+    protected <R> R timed(Class entityClass, String operation, Supplier<R> call) {
+        if (daoMetrics == null) return call.get();
+        return timed(entityClass == null ? null : entityClass.getSimpleName(), operation, null, null, call);
+    }
+
+    /**
+     * 执行并统计hql查询,统计分组取hql中from后的第一个Entity.
+     */
+    protected <R> R timed(String hql, Object[] values, String operation, Supplier<R> call) {
+        if (daoMetrics == null) return call.get();
+        return timed(HqlParser.parse(hql).getEntityName(), operation, hql, values, call);
+    }
+
+    /**
+     * 执行并统计一次操作,出错时只记录耗时.
+     *
+     * @param entityName 统计分组用的Entity名
+     * @param query      慢查询日志中输出的hql或查询名,可为null
+     */
+    protected <R> R timed(String entityName, String operation, String query, Object[] values, Supplier<R> call) {
+        if (daoMetrics == null) return call.get();
+        long begin = System.nanoTime();
+        R result = null;
+        boolean completed = false;
+        try {
+            result = call.get();
+            completed = true;
+            return result;
+        } finally {
+            daoMetrics.record(entityName, operation, System.nanoTime() - begin, completed ? DaoMetrics.countRows(result) : -1, query, values);
+        }
+    }
+
+    /**
+     * 批量写入的统计分组取第一个对象的Entity名,只检查Collection,不重复遍历一次性的Iterable.
+     */
+    private String batchEntity(Iterable<?> entities) {
+        if (daoMetrics == null || !(entities instanceof Collection) || ((Collection) entities).isEmpty()) return null;
+        Object first = entities.iterator().next();
+        return first == null ? null : Hibernate.getClass(first).getSimpleName();
+    }
+
+    /**
+     * 命名查询按"Entity.查询"命名时取其Entity名.
+     */
+    private static String namedQueryEntity(String queryName) {
+        int dot = queryName.indexOf('.');
+        return dot > 0 ? queryName.substring(0, dot) : null;
+    }
+
+    /**
+     * 取in条件中参数个数的上限.
+     */
+    public int getInClauseSize() {
+        return inClauseSize;
+    }
+
+    /**
+     * 设置in条件中参数个数的上限,主键等列表超出时分段执行.
+     */
+    public void setInClauseSize(int inClauseSize) {
+        Assert.isTrue(inClauseSize > 0, "inClauseSize should be positive");
+        this.inClauseSize = inClauseSize;
+    }
+
+    /**
+     * 把集合按指定大小分段,用于分段执行in查询.
+     */
+    protected static <E> List<List<E>> partition(Collection<E> collection, int size) {
+        List<List<E>> chunks = new ArrayList<List<E>>();
+        List<E> chunk = new ArrayList<E>(Math.min(size, collection.size()));
+        for (E e : collection) {
+            chunk.add(e);
+            if (chunk.size() == size) {
+                chunks.add(chunk);
+                chunk = new ArrayList<E>(size);
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+
+    /**
+     * 取Session中已加载的对象,不访问数据库,未加载时返回null.
+     */
+    protected Object getLoadedEntity(Session session, Class entityClass, Serializable id) {
+        SessionImplementor impl = (SessionImplementor) session;
+        EntityPersister persister = impl.getFactory().getEntityPersister(entityClass.getName());
+        return impl.getPersistenceContext().getEntity(impl.generateEntityKey(id, persister));
+    }
+
     public void flush() {
         getHibernateTemplate().flush();
     }
@@ -139,6 +553,58 @@ public class HibernateGenericDao extends HibernateDaoSupport {
         return query;
     }
 
+    /**
+     * 取得映射中声明的命名查询(@NamedQuery/@NamedNativeQuery),按顺序绑定?参数.
+     * <p/>
+     * 命名查询在SessionFactory启动时已编译并校验,执行时直接命中QueryPlanCache.
+     *
+     * @param values 可变参数,见{@link #createQuery(String, Object...)}
+     */
+    public Query createNamedQuery(String queryName, Object... values) {
+        Assert.hasText(queryName);
+        Query query = getSessionFactory().getCurrentSession().getNamedQuery(queryName);
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
+        return query;
+    }
+
+    /**
+     * 取得命名查询,按名称绑定:name参数,Collection或数组类型的值以setParameterList绑定.
+     */
+    public Query createNamedQuery(String queryName, Map<String, ?> params) {
+        Assert.hasText(queryName);
+        Query query = getSessionFactory().getCurrentSession().getNamedQuery(queryName);
+        if (params != null) {
+            for (Map.Entry<String, ?> param : params.entrySet()) {
+                Object value = param.getValue();
+                if (value instanceof Collection) query.setParameterList(param.getKey(), (Collection) value);
+                else if (value instanceof Object[]) query.setParameterList(param.getKey(), (Object[]) value);
+                else query.setParameter(param.getKey(), value);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * 执行命名查询.
+     *
+     * @see #createNamedQuery(String, Object...)
+     */
+    public List findByNamedQuery(String queryName, Object... values) {
+        return timed(namedQueryEntity(queryName), "findByNamedQuery", queryName, values, () -> createNamedQuery(queryName, values).list());
+    }
+
+    /**
+     * 执行命名查询,按名称绑定参数.
+     *
+     * @see #createNamedQuery(String, Map)
+     */
+    public List findByNamedQuery(String queryName, Map<String, ?> params) {
+        return timed(namedQueryEntity(queryName), "findByNamedQuery", queryName, params == null ? null : params.values().toArray(),
+                () -> createNamedQuery(queryName, params).list());
+    }
+
     /**
      * 创建Criteria对象.
      *
@@ -172,7 +638,7 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      */
     public List find(String hql, Object... values) {
         Assert.hasText(hql);
-        return getHibernateTemplate().find(hql, values);
+        return timed(hql, values, "find", () -> getHibernateTemplate().find(hql, values));
     }
 
     /**
@@ -182,7 +648,8 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      */
     public <T> List<T> findBy(Class<T> entityClass, String propertyName, Object value) {
         Assert.hasText(propertyName);
-        return createCriteria(entityClass, Restrictions.eq(propertyName, value)).list();
+        return timed(entityClass, "findBy",
+                () -> cachedQuery(entityClass, () -> createCriteria(entityClass, Restrictions.eq(propertyName, value)).list(), "findBy", propertyName, value));
     }
 
     /**
@@ -191,7 +658,8 @@ public class HibernateGenericDao extends HibernateDaoSupport {
     public <T> List<T> findBy(Class<T> entityClass, String propertyName, Object value, String orderBy, boolean isAsc) {
         Assert.hasText(propertyName);
         Assert.hasText(orderBy);
-        return createCriteria(entityClass, orderBy, isAsc, Restrictions.eq(propertyName, value)).list();
+        return timed(entityClass, "findBy", () -> cachedQuery(entityClass,
+                () -> createCriteria(entityClass, orderBy, isAsc, Restrictions.eq(propertyName, value)).list(), "findBy", propertyName, value, orderBy, isAsc));
     }
 
     /**
@@ -201,7 +669,106 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      */
     public <T> T findUniqueBy(Class<T> entityClass, String propertyName, Object value) {
         Assert.hasText(propertyName);
-        return (T) createCriteria(entityClass, Restrictions.eq(propertyName, value)).uniqueResult();
+        return timed(entityClass, "findUniqueBy", () -> cachedQuery(entityClass,
+                () -> (T) createCriteria(entityClass, Restrictions.eq(propertyName, value)).uniqueResult(), "findUniqueBy", propertyName, value));
+    }
+
+    /**
+     * 投影查询,把hql选出的各列按顺序传给DTO的构造函数,不加载Entity.
+     * <pre>
+     * dao.findProjection(UserSummary.class, "select u.id, u.name from Users u where u.address = ?", address);
+     * </pre>
+     *
+     * @param dtoClass 有与选出列对应的构造函数的DTO类型
+     * @param values   可变参数,见{@link #createQuery(String, Object...)}
+     * @see ConstructorResultTransformer
+     */
+    public <D> List<D> findProjection(Class<D> dtoClass, String hql, Object... values) {
+        return timed(hql, values, "findProjection", () -> createQuery(hql, values).setResultTransformer(ConstructorResultTransformer.forClass(dtoClass)).list());
+    }
+
+    /**
+     * 以命名查询执行的投影查询,把选出的各列按顺序传给DTO的构造函数.
+     *
+     * @param values 可变参数,见{@link #createNamedQuery(String, Object...)}
+     * @see #findProjection(Class, String, Object...)
+     */
+    public <D> List<D> findProjectionByNamedQuery(Class<D> dtoClass, String queryName, Object... values) {
+        return timed(namedQueryEntity(queryName), "findProjectionByNamedQuery", queryName, values,
+                () -> createNamedQuery(queryName, values).setResultTransformer(ConstructorResultTransformer.forClass(dtoClass)).list());
+    }
+
+    /**
+     * 以sql执行的投影查询,把选出的各列按顺序传给DTO的构造函数.
+     *
+     * @see #findProjection(Class, String, Object...)
+     */
+    public <D> List<D> findProjectionBySql(Class<D> dtoClass, String sql, Object... values) {
+        Assert.hasText(sql);
+        SQLQuery query = getSessionFactory().getCurrentSession().createSQLQuery(sql);
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
+        // sql不能按hql解析,以DTO类型作为统计分组
+        return timed(dtoClass.getSimpleName(), "findProjectionBySql", sql, values, () -> query.setResultTransformer(ConstructorResultTransformer.forClass(dtoClass)).list());
+    }
+
+    /**
+     * 以只进游标执行hql查询,按{@link #getFetchSize()}分批从数据库读取,结果对象为只读.
+     * 使用后须关闭返回的ScrollableResults.
+     * <p/>
+     * 读取的实体及其关联都留在当前Session中,遍历大结果集时须定期evict或clear,
+     * 否则应使用{@link #stream(String, Object...)}.
+     *
+     * @param values 可变参数,见{@link #createQuery(String, Object...)}
+     */
+    public ScrollableResults scroll(String hql, Object... values) {
+        return createQuery(hql, values).setFetchSize(fetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    /**
+     * 以只进游标流式读取hql的查询结果,用于遍历整表等大结果集.
+     * <p/>
+     * 每{@link ScrollIterator#DEFAULT_EVICT_INTERVAL}行flush一次Session,再把遍历期间进入Session的对象
+     * (包括关联对象,以及在forEach中get、save的对象)移出Session,内存占用不随结果集增长,
+     * 遍历之前Session中已有的对象不受影响. 对象移出后的修改不会再被保存,须在处理该行时完成修改或改用merge.
+     * 须在事务内使用并在用完后关闭Stream:
+     * <pre>
+     * try (Stream&lt;User&gt; users = dao.stream("from User where status = ?", "0")) {
+     *     users.forEach(...);
+     * }
+     * </pre>
+     *
+     * @param values 可变参数,见{@link #createQuery(String, Object...)}
+     */
+    public <T> Stream<T> stream(String hql, Object... values) {
+        return stream(scroll(hql, values));
+    }
+
+    /**
+     * 以只进游标流式读取符合条件的对象.
+     *
+     * @see #stream(String, Object...)
+     */
+    public <T> Stream<T> stream(Class<T> entityClass, Criterion... criterions) {
+        Criteria criteria = createCriteria(entityClass, criterions).setFetchSize(fetchSize).setReadOnly(true);
+        return stream(criteria.scroll(ScrollMode.FORWARD_ONLY));
+    }
+
+    private <T> Stream<T> stream(ScrollableResults results) {
+        final ScrollIterator<T> iterator = new ScrollIterator<T>(getSessionFactory().getCurrentSession(), results);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(iterator::close);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置游标查询每次从数据库取的行数.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
     }
 
     /**
@@ -210,18 +777,19 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      * @param pageNo 页号,从1开始.
      */
     public Page pagedQuery(String hql, int pageNo, int pageSize, Object... values) {
+        return pagedQuery(hql, pageNo, pageSize, CountMode.EXACT, values);
+    }
+
+    /**
+     * 分页查询函数，使用hql,可指定总记录数的取得方式.
+     *
+     * @param pageNo    页号,从1开始.
+     * @param countMode count查询方式,见{@link CountMode}
+     */
+    public Page pagedQuery(String hql, int pageNo, int pageSize, CountMode countMode, Object... values) {
         Assert.hasText(hql);
         Assert.isTrue(pageNo >= 1, "pageNo should start from 1");
-        // Count查询
-        String countQueryString = " select count (*) " + removeSelect(removeOrders(hql));
-        List countlist = getHibernateTemplate().find(countQueryString, values);
-        long totalCount = (Long) countlist.get(0);
-        if (totalCount < 1) return new Page();
-        // 实际查询返回分页对象
-        int startIndex = Page.getStartOfPage(pageNo, pageSize);
-        Query query = createQuery(hql, values);
-        List list = query.setFirstResult(startIndex).setMaxResults(pageSize).list();
-        return new Page(startIndex, totalCount, pageSize, list);
+        return dataQuery(hql, Page.getStartOfPage(pageNo, pageSize), pageSize, countMode, values);
     }
 
     /**
@@ -234,20 +802,203 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      * @since 2008-7-21
      */
     public Page dataQuery(String hql, int start, int pageSize, Object... values) {
+        return dataQuery(hql, start, pageSize, CountMode.EXACT, values);
+    }
+
+    /**
+     * 从指定位置开始的分页查询,可指定总记录数的取得方式.
+     *
+     * @param start     分页从哪一条数据开始
+     * @param countMode count查询方式,见{@link CountMode}
+     * @see #dataQuery(String, int, int, Object[])
+     */
+    public Page dataQuery(String hql, int start, int pageSize, CountMode countMode, Object... values) {
+        Assert.hasText(hql);
+        Assert.notNull(countMode);
+        return timed(hql, values, "pagedQuery", () -> doDataQuery(hql, start, pageSize, countMode, values));
+    }
+
+    private Page doDataQuery(String hql, int start, int pageSize, CountMode countMode, Object... values) {
+        if (countMode == CountMode.NONE) {
+            // 不执行count,多取一条判断是否有下一页
+            List list = createQuery(hql, values).setFirstResult(start).setMaxResults(pageSize + 1).list();
+            boolean hasNextPage = list.size() > pageSize;
+            if (hasNextPage) list = new ArrayList(list.subList(0, pageSize));
+            return new Page(start, pageSize, list, hasNextPage);
+        }
+        if (countMode == CountMode.LAZY || countMode == CountMode.ASYNC) return deferredCountQuery(hql, start, pageSize, countMode, values);
         // Count查询
-        String countQueryString = " select count (*) " + removeSelect(removeOrders(hql));
-        List countlist = getHibernateTemplate().find(countQueryString, values);
-        long totalCount = (Long) countlist.get(0);
+        long totalCount = countMode == CountMode.CACHED ? cachedCount(hql, values) : count(hql, values);
         if (totalCount < 1) return new Page();
         // 实际查询返回分页对象
-        int startIndex = start;
         Query query = createQuery(hql, values);
-        List list = query.setFirstResult(startIndex).setMaxResults(pageSize).list();
-        return new Page(startIndex, totalCount, pageSize, list);
+        List list = query.setFirstResult(start).setMaxResults(pageSize).list();
+        return new Page(start, totalCount, pageSize, list);
+    }
+
+    /**
+     * 数据查询在当前Session执行,count查询延迟或异步在新的Session中执行.
+     * <p/>
+     * 本页不满时总记录数已确定,异步的count被取消:尚未开始的不再执行,正在执行的以{@link Session#cancelQuery()}
+     * 取消数据库中的语句(是否立即中止取决于驱动),其连接随即归还. countExecutor拒绝任务时退回为LAZY方式.
+     * count与数据查询使用同一个库,即当前Session所在的SessionFactory.
+     */
+    private Page deferredCountQuery(final String hql, int start, int pageSize, CountMode countMode, final Object... values) {
+        // getSessionFactory()可能是路由代理,在其他线程或事务结束后调用时不再指向当前事务的库
+        final SessionFactory sessionFactory = ((SessionImplementor) getSessionFactory().getCurrentSession()).getFactory();
+        AsyncCount asyncCount = null;
+        CompletableFuture<Long> countFuture = null;
+        if (countMode == CountMode.ASYNC) {
+            Assert.state(countExecutor != null, "countExecutor is required for CountMode.ASYNC");
+            asyncCount = new AsyncCount(sessionFactory, hql, values);
+            try {
+                countFuture = CompletableFuture.supplyAsync(asyncCount, countExecutor);
+            } catch (RejectedExecutionException e) {
+                logger.warn("count executor saturated, count of [" + hql + "] deferred");
+                asyncCount = null;
+            }
+        }
+        List list;
+        try {
+            list = createQuery(hql, values).setFirstResult(start).setMaxResults(pageSize).list();
+        } catch (RuntimeException | Error e) {
+            // 数据查询失败时没有Page持有count,须在此取消以归还其连接
+            if (asyncCount != null) {
+                asyncCount.cancel();
+                countFuture.cancel(false);
+            }
+            throw e;
+        }
+        // 本页不满时总记录数已确定,不再需要count
+        if (list.size() < pageSize && (start == 0 || !list.isEmpty())) {
+            if (asyncCount != null) {
+                asyncCount.cancel();
+                countFuture.cancel(false);
+            }
+            return new Page(start, start + list.size(), pageSize, list);
+        }
+        if (countFuture != null) return new Page(start, pageSize, list, countFuture);
+        return new Page(start, pageSize, list, (Supplier<Long>) () -> detachedCount(sessionFactory, hql, values));
+    }
+
+    /**
+     * 在新打开的只读Session中执行count查询,使用单独的数据库连接,不参与当前事务.
+     */
+    private long detachedCount(SessionFactory sessionFactory, String hql, Object... values) {
+        Session session = sessionFactory.openSession();
+        try {
+            return detachedCount(session, hql, values);
+        } finally {
+            session.close();
+        }
+    }
+
+    private long detachedCount(Session session, String hql, Object... values) {
+        session.setDefaultReadOnly(true);
+        Query query = session.createQuery(HqlParser.parse(hql).getCountHql());
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
+        return ((Number) query.uniqueResult()).longValue();
+    }
+
+    /**
+     * 在countExecutor中执行的count查询,可从其他线程取消.
+     */
+    private final class AsyncCount implements Supplier<Long> {
+        private final SessionFactory sessionFactory;
+        private final String hql;
+        private final Object[] values;
+        private volatile Session session; // 执行中的Session
+        private volatile boolean cancelled;
+
+        AsyncCount(SessionFactory sessionFactory, String hql, Object[] values) {
+            this.sessionFactory = sessionFactory;
+            this.hql = hql;
+            this.values = values;
+        }
+
+        public Long get() {
+            if (cancelled) throw new CancellationException();
+            Session current = sessionFactory.openSession();
+            session = current;
+            try {
+                // 打开Session期间被取消时cancelQuery可能未作用到语句上
+                if (cancelled) throw new CancellationException();
+                return detachedCount(current, hql, values);
+            } finally {
+                session = null;
+                current.close();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Session current = session;
+            if (current == null) return;
+            try {
+                current.cancelQuery();
+            } catch (RuntimeException e) {
+                // 语句已执行完或Session已关闭
+                logger.debug("Could not cancel count query", e);
+            }
+        }
+    }
+
+    /**
+     * 取执行异步count查询的线程池.
+     */
+    public Executor getCountExecutor() {
+        return countExecutor;
+    }
+
+    /**
+     * 设置执行异步count查询的线程池,使用CountMode.ASYNC时必须设置. 每个count查询占用一个数据库连接并执行阻塞的JDBC调用,
+     * 应使用有界且线程数小于连接池容量的线程池,如application-master.xml中的jdbcExecutor,不要使用ForkJoinPool.commonPool().
+     *
+     * @see CountMode#ASYNC
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        Assert.notNull(countExecutor);
+        this.countExecutor = countExecutor;
+    }
+
+    /**
+     * 执行hql对应的count查询,count语句取自{@link HqlParser}的缓存.
+     */
+    private long count(String hql, Object... values) {
+        String countQueryString = HqlParser.parse(hql).getCountHql();
+        List countlist = getHibernateTemplate().find(countQueryString, values);
+        return ((Number) countlist.get(0)).longValue();
+    }
+
+    /**
+     * 执行hql对应的count查询,结果按规范化的hql与参数缓存在queryResultCache的count分区中,有效期内直接返回缓存值.
+     * 任何写操作提交后缓存的count全部失效.
+     *
+     * @see QueryResultCache#getCount(Supplier, Object...)
+     */
+    private long cachedCount(String hql, Object... values) {
+        return queryResultCache.getCount(() -> count(hql, values), HqlParser.parse(hql).getNormalizedHql(), parameterKey(values));
+    }
+
+    /**
+     * 由参数值及其类型构成count缓存的键,toString相同而类型或值不同的参数(如1与"1")不会共用缓存. 数组参数按元素比较.
+     */
+    private static List<Object> parameterKey(Object[] values) {
+        List<Object> key = new ArrayList<Object>(values.length * 2);
+        for (Object value : values) {
+            key.add(value == null ? null : value.getClass());
+            key.add(value instanceof Object[] ? parameterKey((Object[]) value) : value);
+        }
+        return key;
     }
 
     /**
      * 分页查询函数，使用已设好查询条件与排序的<code>Criteria</code>.
+     * <p/>
+     * 暂时取出排序条件执行count查询后再按原顺序加回,不再反射修改CriteriaImpl.
+     * 新代码建议使用{@link #pagedQuery(CriteriaSpec, int, int)}.
      *
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
@@ -255,56 +1006,150 @@ public class HibernateGenericDao extends HibernateDaoSupport {
     public Page pagedQuery(Criteria criteria, int pageNo, int pageSize) {
         Assert.notNull(criteria);
         Assert.isTrue(pageNo >= 1, "pageNo should start from 1");
+        String entityName = StringUtils.unqualify(((CriteriaImpl) criteria).getEntityOrClassName());
+        return timed(entityName, "pagedQuery", null, null, () -> doPagedQuery(criteria, pageNo, pageSize));
+    }
+
+    private Page doPagedQuery(Criteria criteria, int pageNo, int pageSize) {
         CriteriaImpl impl = (CriteriaImpl) criteria;
         // 先把Projection和OrderBy条件取出来,清空两者来执行Count操作
         Projection projection = impl.getProjection();
-        List<CriteriaImpl.OrderEntry> orderEntries;
-        try {
-            orderEntries = (List) BeanUtils.forceGetProperty(impl, "orderEntries");
-            BeanUtils.forceSetProperty(impl, "orderEntries", new ArrayList());
-        } catch (Exception e) {
-            throw new InternalError(" Runtime Exception impossibility throw ");
+        List<CriteriaImpl.OrderEntry> orderEntries = new ArrayList<CriteriaImpl.OrderEntry>();
+        for (Iterator<CriteriaImpl.OrderEntry> it = impl.iterateOrderings(); it.hasNext(); ) {
+            orderEntries.add(it.next());
+            it.remove();
         }
         // 执行查询
-        int totalCount = (Integer) criteria.setProjection(Projections.rowCount()).uniqueResult();
+        long totalCount = ((Number) criteria.setProjection(Projections.rowCount()).uniqueResult()).longValue();
         // 将之前的Projection和OrderBy条件重新设回去
         criteria.setProjection(projection);
         if (projection == null) {
             criteria.setResultTransformer(CriteriaSpecification.ROOT_ENTITY);
         }
-        try {
-            BeanUtils.forceSetProperty(impl, "orderEntries", orderEntries);
-        } catch (Exception e) {
-            throw new InternalError(" Runtime Exception impossibility throw ");
+        for (CriteriaImpl.OrderEntry entry : orderEntries) {
+            entry.getCriteria().addOrder(entry.getOrder());
         }
         // 返回分页对象
         if (totalCount < 1) return new Page();
         int startIndex = Page.getStartOfPage(pageNo, pageSize);
-        ;
         List list = criteria.setFirstResult(startIndex).setMaxResults(pageSize).list();
         return new Page(startIndex, totalCount, pageSize, list);
     }
 
     /**
-     * 分页查询函数，根据entityClass和查询条件参数创建默认的<code>Criteria</code>.
+     * 分页查询函数，由可重用的查询定义分别生成count查询与数据查询.
      *
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
      */
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, Criterion... criterions) {
-        Criteria criteria = createCriteria(entityClass, criterions);
-        return pagedQuery(criteria, pageNo, pageSize);
+    public <T> Page<T> pagedQuery(CriteriaSpec<T> spec, int pageNo, int pageSize) {
+        Assert.notNull(spec);
+        Assert.isTrue(pageNo >= 1, "pageNo should start from 1");
+        return timed(spec.getEntityClass(), "pagedQuery", () -> doPagedQuery(spec, pageNo, pageSize));
+    }
+
+    private <T> Page<T> doPagedQuery(CriteriaSpec<T> spec, int pageNo, int pageSize) {
+        Session session = getSessionFactory().getCurrentSession();
+        long totalCount = ((Number) spec.createCountCriteria(session).uniqueResult()).longValue();
+        if (totalCount < 1) return new Page<T>();
+        int startIndex = Page.getStartOfPage(pageNo, pageSize);
+        List<T> list = spec.createCriteria(session).setFirstResult(startIndex).setMaxResults(pageSize).list();
+        return new Page<T>(startIndex, totalCount, pageSize, list);
     }
 
     /**
-     * 分页查询函数，根据entityClass和查询条件参数,排序参数创建默认的<code>Criteria</code>.
+     * 分页查询函数，根据entityClass和查询条件参数创建默认的查询定义.
      *
      * @param pageNo 页号,从1开始.
      * @return 含总记录数和当前页数据的Page对象.
      */
-    public Page pagedQuery(Class entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions) {
-        Criteria criteria = createCriteria(entityClass, orderBy, isAsc, criterions);
-        return pagedQuery(criteria, pageNo, pageSize);
+    public <T> Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, Criterion... criterions) {
+        return pagedQuery(CriteriaSpec.forClass(entityClass).add(criterions), pageNo, pageSize);
+    }
+
+    /**
+     * 分页查询函数，根据entityClass和查询条件参数,排序参数创建默认的查询定义.
+     *
+     * @param pageNo 页号,从1开始.
+     * @return 含总记录数和当前页数据的Page对象.
+     */
+    public <T> Page<T> pagedQuery(Class<T> entityClass, int pageNo, int pageSize, String orderBy, boolean isAsc, Criterion... criterions) {
+        Assert.hasText(orderBy);
+        CriteriaSpec<T> spec = CriteriaSpec.forClass(entityClass).add(criterions).addOrder(isAsc ? Order.asc(orderBy) : Order.desc(orderBy));
+        return pagedQuery(spec, pageNo, pageSize);
+    }
+
+    /**
+     * 键集分页(seek)查询函数,按单个排序属性定位下一页.
+     *
+     * @param sortProperty 排序属性,值须唯一且不为null,如主键
+     * @param lastKey      上一页最后一条记录的排序属性值,取第一页时为null
+     * @see #seekQuery(Class, int, String[], boolean, Object[], Criterion[])
+     */
+    public <T> KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String sortProperty, boolean isAsc, Object lastKey, Criterion... criterions) {
+        Assert.hasText(sortProperty);
+        return seekQuery(entityClass, pageSize, new String[]{sortProperty}, isAsc, lastKey == null ? null : new Object[]{lastKey}, criterions);
+    }
+
+    /**
+     * 键集分页(seek)查询函数. 以上一页最后一条记录的排序键为起点取下一页,不使用setFirstResult,
+     * 在排序属性有索引时深翻页与首页开销相同.
+     * <p/>
+     * 排序属性组合起来须唯一(通常以主键结尾),否则翻页时会漏掉或重复记录. 排序属性的值不能为null,
+     * 否则 p > null 不匹配任何记录,翻页会提前结束,因此lastKeys中有null时抛出IllegalArgumentException.
+     * 多取一条记录判断是否有下一页,不执行count查询.
+     *
+     * @param sortProperties 排序属性,按先后顺序比较
+     * @param lastKeys       上一页的{@link KeysetPage#getNextKeys()},取第一页时为null
+     * @return 含续查令牌的KeysetPage对象.
+     */
+    public <T> KeysetPage<T> seekQuery(Class<T> entityClass, int pageSize, String[] sortProperties, boolean isAsc, Object[] lastKeys, Criterion... criterions) {
+        Assert.notEmpty(sortProperties);
+        Assert.isTrue(pageSize > 0, "pageSize should be positive");
+        Assert.isTrue(lastKeys == null || lastKeys.length == sortProperties.length, "lastKeys should match sortProperties");
+        Assert.noNullElements(lastKeys, "sort properties of seekQuery should not be null");
+        return timed(entityClass, "seekQuery", () -> doSeekQuery(entityClass, pageSize, sortProperties, isAsc, lastKeys, criterions));
+    }
+
+    private <T> KeysetPage<T> doSeekQuery(Class<T> entityClass, int pageSize, String[] sortProperties, boolean isAsc, Object[] lastKeys, Criterion... criterions) {
+        Criteria criteria = createCriteria(entityClass, criterions);
+        if (lastKeys != null) criteria.add(seekCriterion(sortProperties, isAsc, lastKeys));
+        for (String property : sortProperties) {
+            criteria.addOrder(isAsc ? Order.asc(property) : Order.desc(property));
+        }
+        // 多取一条判断是否有下一页
+        List<T> list = criteria.setMaxResults(pageSize + 1).list();
+        boolean hasNextPage = list.size() > pageSize;
+        if (hasNextPage) list = new ArrayList<T>(list.subList(0, pageSize));
+        Object[] nextKeys = null;
+        if (!list.isEmpty()) {
+            Object last = list.get(list.size() - 1);
+            nextKeys = new Object[sortProperties.length];
+            EntityMetadata metadata = getEntityMetadata(entityClass);
+            for (int i = 0; i < sortProperties.length; i++) {
+                nextKeys[i] = metadata.getPropertyValue(last, sortProperties[i]);
+            }
+        }
+        return new KeysetPage<T>(pageSize, list, hasNextPage, nextKeys);
+    }
+
+    /**
+     * 构造键集分页的定位条件,展开为 (p0 > k0) or (p0 = k0 and p1 > k1) or ...,
+     * 并加上 p0 >= k0 以便数据库使用索引做范围扫描.
+     */
+    private static Criterion seekCriterion(String[] properties, boolean isAsc, Object[] keys) {
+        Disjunction disjunction = Restrictions.disjunction();
+        for (int i = 0; i < properties.length; i++) {
+            Conjunction conjunction = Restrictions.conjunction();
+            for (int j = 0; j < i; j++) {
+                conjunction.add(Restrictions.eq(properties[j], keys[j]));
+            }
+            conjunction.add(isAsc ? Restrictions.gt(properties[i], keys[i]) : Restrictions.lt(properties[i], keys[i]));
+            disjunction.add(conjunction);
+        }
+        if (properties.length == 1) return disjunction;
+        Criterion range = isAsc ? Restrictions.ge(properties[0], keys[0]) : Restrictions.le(properties[0], keys[0]);
+        return Restrictions.and(range, disjunction);
     }
 
     /**
@@ -316,10 +1161,11 @@ public class HibernateGenericDao extends HibernateDaoSupport {
         Assert.hasText(uniquePropertyNames);
         Criteria criteria = createCriteria(entityClass).setProjection(Projections.rowCount());
         String[] nameList = uniquePropertyNames.split(",");
+        EntityMetadata metadata = getEntityMetadata(entityClass);
         try {
             // 循环加入唯一列
             for (String name : nameList) {
-                criteria.add(Restrictions.eq(name, PropertyUtils.getProperty(entity, name)));
+                criteria.add(Restrictions.eq(name, metadata.getPropertyValue(entity, name)));
             }
             // 以下代码为了如果是update的情况,排除entity自身.
             String idName = getIdName(entityClass);
@@ -330,7 +1176,88 @@ public class HibernateGenericDao extends HibernateDaoSupport {
         } catch (Exception e) {
             ReflectionUtils.handleReflectionException(e);
         }
-        return (Integer) criteria.uniqueResult() == 0;
+        return ((Number) criteria.uniqueResult()).longValue() == 0;
+    }
+
+    /**
+     * 批量判断对象某些属性的值在数据库中是否唯一,返回不唯一的对象.
+     * <p/>
+     * 对象每{@link #UNIQUE_CHECK_BATCH_SIZE}个一段,每段只发一条查询,导入大量数据时查询次数与段数而非行数相关.
+     * 查询以每个对象的唯一列条件的or作为where条件,并为每个对象投影一列"该记录是否与之冲突",
+     * 是否相等完全由数据库判断(排序规则、尾部空格、时间精度等),与{@link #isUnique(Class, Object, String)}一致.
+     * 唯一列中有null值的对象与isUnique相同,不与任何记录冲突.
+     * <p/>
+     * 与本批中前面的对象唯一列的值相等(按equals)的对象也视为不唯一,结果按传入顺序排列.
+     *
+     * @param uniquePropertyNames 在POJO里不能重复的属性列表,以逗号分割 如"name,loginid,password"
+     * @see #isUnique(Class, Object, String)
+     */
+    public <T> List<T> findNotUnique(Class<T> entityClass, Collection<? extends T> entities, String uniquePropertyNames) {
+        Assert.notNull(entities);
+        Assert.hasText(uniquePropertyNames);
+        String[] nameList = StringUtils.trimArrayElements(uniquePropertyNames.split(","));
+        EntityMetadata metadata = getEntityMetadata(entityClass);
+        String idName = metadata.getIdName();
+        List<T> result = new ArrayList<T>();
+        Set<List<Object>> batchKeys = new HashSet<List<Object>>();
+        for (List<? extends T> chunk : partition(entities, UNIQUE_CHECK_BATCH_SIZE)) {
+            // 唯一列都不为null的对象才需要查询
+            List<T> candidates = new ArrayList<T>(chunk.size());
+            List<Object[]> candidateValues = new ArrayList<Object[]>(chunk.size());
+            Set<T> conflicts = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+            for (T entity : chunk) {
+                Object[] values = new Object[nameList.length];
+                boolean hasNull = false;
+                for (int j = 0; j < nameList.length; j++) {
+                    values[j] = metadata.getPropertyValue(entity, nameList[j]);
+                    hasNull |= values[j] == null;
+                }
+                if (hasNull) continue;
+                if (!batchKeys.add(Arrays.asList(values))) conflicts.add(entity);
+                candidates.add(entity);
+                candidateValues.add(values);
+            }
+            if (!candidates.isEmpty()) {
+                // select e.id, case when (e.a = :p0_0 and e.b = :p0_1) then 1 else 0 end, ... where (...) or (...)
+                StringBuilder select = new StringBuilder("select e.").append(idName);
+                StringBuilder where = new StringBuilder();
+                for (int i = 0; i < candidates.size(); i++) {
+                    StringBuilder condition = new StringBuilder("(");
+                    for (int j = 0; j < nameList.length; j++) {
+                        if (j > 0) condition.append(" and ");
+                        condition.append("e.").append(nameList[j]).append(" = :p").append(i).append('_').append(j);
+                    }
+                    condition.append(')');
+                    select.append(", case when ").append(condition).append(" then 1 else 0 end");
+                    if (i > 0) where.append(" or ");
+                    where.append(condition);
+                }
+                String hql = select.append(" from ").append(entityClass.getName()).append(" e where ").append(where).toString();
+                Query query = getSessionFactory().getCurrentSession().createQuery(hql);
+                for (int i = 0; i < candidates.size(); i++) {
+                    Object[] values = candidateValues.get(i);
+                    for (int j = 0; j < nameList.length; j++) {
+                        query.setParameter("p" + i + '_' + j, values[j]);
+                    }
+                }
+                List<Object[]> rows = query.list();
+                for (int i = 0; i < candidates.size(); i++) {
+                    T entity = candidates.get(i);
+                    Serializable id = metadata.getId(entity);
+                    for (Object[] row : rows) {
+                        // 排除entity自身,即update的情况
+                        if (((Number) row[i + 1]).intValue() == 1 && (id == null || !id.equals(row[0]))) {
+                            conflicts.add(entity);
+                            break;
+                        }
+                    }
+                }
+            }
+            for (T entity : chunk) {
+                if (conflicts.contains(entity)) result.add(entity);
+            }
+        }
+        return result;
     }
 
     /**
@@ -339,7 +1266,7 @@ public class HibernateGenericDao extends HibernateDaoSupport {
     public Serializable getId(Class entityClass, Object entity) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
         Assert.notNull(entity);
         Assert.notNull(entityClass);
-        return (Serializable) PropertyUtils.getProperty(entity, getIdName(entityClass));
+        return getEntityMetadata(entityClass).getId(entity);
     }
 
     /**
@@ -347,11 +1274,22 @@ public class HibernateGenericDao extends HibernateDaoSupport {
      */
     public String getIdName(Class clazz) {
         Assert.notNull(clazz);
-        ClassMetadata meta = getSessionFactory().getClassMetadata(clazz);
-        Assert.notNull(meta, "Class " + clazz + " not define in hibernate session factory.");
-        String idName = meta.getIdentifierPropertyName();
-        Assert.hasText(idName, clazz.getSimpleName() + " has no identifier property define.");
-        return idName;
+        return getEntityMetadata(clazz).getIdName();
+    }
+
+    /**
+     * 取得Entity的映射信息,首次取时从SessionFactory读取并缓存在本DAO中.
+     *
+     * @see EntityMetadata
+     */
+    public EntityMetadata getEntityMetadata(Class clazz) {
+        EntityMetadata metadata = entityMetadata.get(clazz);
+        if (metadata == null) {
+            metadata = EntityMetadata.forClass(getSessionFactory(), clazz);
+            EntityMetadata existing = entityMetadata.putIfAbsent(clazz, metadata);
+            if (existing != null) metadata = existing;
+        }
+        return metadata;
     }
 
 }
\ No newline at end of file
@@ -1,16 +1,25 @@
 package com.sh.hibernate.dao.extend;
 
 import com.sh.hibernate.dao.HibernateEntityDao;
-import org.apache.commons.beanutils.PropertyUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.CascadeStyle;
+import org.hibernate.engine.spi.CascadingAction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
-import org.springframework.util.ReflectionUtils;
 
+import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 加强版的entity dao.
@@ -35,6 +44,8 @@ public class HibernateEntityExtendDao<T> extends HibernateEntityDao<T> implement
      */
     protected EntityInfo entityInfo;
 
+    private final ConcurrentMap<Class, EntityInfo> entityInfos = new ConcurrentHashMap<Class, EntityInfo>();
+
     /**
      * 构造函数，初始化entity信息.
      */
@@ -48,9 +59,11 @@ public class HibernateEntityExtendDao<T> extends HibernateEntityDao<T> implement
      * @see IUndeleteableEntityOperation#getAllValid()
      */
     public List<T> getAllValid() {
-        Criteria criteria = createCriteria();
-        if (entityInfo.isUndeletable) criteria.add(getUnDeletableCriterion());
-        return criteria.list();
+        return cachedQuery(getEntityClass(), () -> {
+            Criteria criteria = createCriteria();
+            if (entityInfo.isUndeletable) criteria.add(getUnDeletableCriterion());
+            return criteria.list();
+        }, "getAllValid");
     }
 
     /**
@@ -92,15 +105,116 @@ public class HibernateEntityExtendDao<T> extends HibernateEntityDao<T> implement
     @Override
     public void remove(Object entity) {
         if (entityInfo.isUndeletable) {
-            try {
-                PropertyUtils.setProperty(entity, entityInfo.statusProperty, UNVALID_VALUE);
-                save(entity);
-            } catch (Exception e) {
-                ReflectionUtils.handleReflectionException(e);
-            }
+            getEntityMetadata(getEntityClass()).setPropertyValue(entity, entityInfo.statusProperty, UNVALID_VALUE);
+            save(entity);
         } else super.remove(entity);
     }
 
+    /**
+     * 按主键批量删除本DAO所管理的Entity.
+     *
+     * @see #removeAll(Class, Collection)
+     */
+    public int removeAll(Collection<? extends Serializable> ids) {
+        return removeAll(getEntityClass(), ids);
+    }
+
+    /**
+     * 按主键批量删除对象. Undeletable的entity执行一条set-based的update语句把状态设为无效,否则执行delete语句,
+     * 主键列表按{@link #getInClauseSize()}分段.
+     * <p/>
+     * 批量的delete语句不经过Session,不处理级联删除与orphan removal,也不触发拦截器与事件监听.
+     * 因此有关联配置了删除级联(cascade="delete"/"all"或orphanRemoval)的entity改为逐个加载后以session.delete删除,
+     * 行为与{@link #remove(Object)}相同. Undeletable的entity只修改状态,不涉及级联.
+     * <p/>
+     * 执行前先flush当前Session. 不调用onValid; Session中已加载的相应对象会被evict,
+     * 二级缓存由Hibernate在执行批量hql后按实体清除.
+     *
+     * @return 受影响的记录数
+     */
+    public int removeAll(Class entityClass, Collection<? extends Serializable> ids) {
+        Assert.notNull(entityClass);
+        Assert.notNull(ids);
+        if (ids.isEmpty()) return 0;
+        EntityInfo info = getEntityInfo(entityClass);
+        Session session = getSessionFactory().getCurrentSession();
+        session.flush();
+        int count = 0;
+        if (!info.isUndeletable && hasDeleteCascades(entityClass)) {
+            String idName = getIdName(entityClass);
+            for (List<? extends Serializable> chunk : partition(ids, getInClauseSize())) {
+                for (Object entity : createCriteria(entityClass, Restrictions.in(idName, chunk)).list()) {
+                    session.delete(entity);
+                    count++;
+                }
+            }
+            invalidateQueryCache(entityClass);
+            return count;
+        }
+        String entityName = entityClass.getName();
+        String idName = getIdName(entityClass);
+        String hql;
+        if (info.isUndeletable)
+            hql = "update " + entityName + " set " + info.statusProperty + " = :status where " + idName + " in (:ids)";
+        else hql = "delete from " + entityName + " where " + idName + " in (:ids)";
+        for (List<? extends Serializable> chunk : partition(ids, getInClauseSize())) {
+            Query query = session.createQuery(hql).setParameterList("ids", chunk);
+            if (info.isUndeletable) query.setParameter("status", UNVALID_VALUE);
+            count += query.executeUpdate();
+        }
+        // Session中已加载的对象与数据库不再一致,移出Session
+        for (Serializable id : ids) {
+            Object entity = getLoadedEntity(session, entityClass, id);
+            if (entity != null) session.evict(entity);
+        }
+        invalidateQueryCache(entityClass);
+        return count;
+    }
+
+    /**
+     * 批量删除本DAO所管理的Entity中符合条件的对象.
+     *
+     * @see #removeWhere(Class, Criterion[])
+     */
+    public int removeWhere(Criterion... criterions) {
+        return removeWhere(getEntityClass(), criterions);
+    }
+
+    /**
+     * 批量删除符合条件的对象. 先以一条查询取出符合条件的主键,再按{@link #removeAll(Class, Collection)}分段执行.
+     *
+     * @return 受影响的记录数
+     */
+    public int removeWhere(Class entityClass, Criterion... criterions) {
+        List<Serializable> ids = createCriteria(entityClass, criterions).setProjection(Projections.id()).list();
+        return removeAll(entityClass, ids);
+    }
+
+    /**
+     * 取entity的Undeletable信息,本DAO所管理的Entity直接使用构造时取得的信息.
+     */
+    protected EntityInfo getEntityInfo(Class entityClass) {
+        if (entityClass == this.entityClass) return entityInfo;
+        EntityInfo info = entityInfos.get(entityClass);
+        if (info == null) {
+            info = new EntityInfo(entityClass);
+            entityInfos.putIfAbsent(entityClass, info);
+        }
+        return info;
+    }
+
+    /**
+     * entity是否有删除时级联或orphan removal的关联.
+     */
+    protected boolean hasDeleteCascades(Class entityClass) {
+        EntityPersister persister = ((SessionFactoryImplementor) getSessionFactory()).getEntityPersister(entityClass.getName());
+        if (!persister.hasCascades()) return false;
+        for (CascadeStyle style : persister.getPropertyCascadeStyles()) {
+            if (style.doCascade(CascadingAction.DELETE) || style.hasOrphanDelete()) return true;
+        }
+        return false;
+    }
+
     /**
      * 与数据库相关的校验,比如判断名字在数据库里有没有重复, 在保存时被调用,在子类重载.
      *
@@ -2,6 +2,8 @@ package com.sh.hibernate.dao.extend;
 
 import org.hibernate.criterion.Criterion;
 
+import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -26,6 +28,20 @@ public interface IUndeleteableEntityOperation<T> {
      */
     void remove(Object entity);
 
+    /**
+     * 按主键批量删除对象，但如果是Undeleteable的entity,以一条update语句把状态设为无效.
+     *
+     * @return 受影响的记录数
+     */
+    int removeAll(Collection<? extends Serializable> ids);
+
+    /**
+     * 批量删除符合条件的对象，但如果是Undeleteable的entity,把状态设为无效.
+     *
+     * @return 受影响的记录数
+     */
+    int removeWhere(Criterion... criterions);
+
     /**
      * 获取过滤已删除对象的hql条件语句.
      */
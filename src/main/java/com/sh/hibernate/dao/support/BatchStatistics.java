@@ -0,0 +1,65 @@
+package com.sh.hibernate.dao.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量写入的吞吐统计,记录写入的对象数、flush批次数与耗时.
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#saveAll(Iterable, int)
+ */
+public class BatchStatistics {
+    private final AtomicLong entityCount = new AtomicLong(); // 写入的对象总数
+    private final AtomicLong batchCount = new AtomicLong(); // flush批次总数
+    private final AtomicLong callCount = new AtomicLong(); // 批量写入调用次数
+    private final AtomicLong elapsedNanos = new AtomicLong(); // 累计耗时(纳秒)
+
+    /**
+     * 记录一次批量写入.
+     */
+    public void record(long entities, long batches, long nanos) {
+        entityCount.addAndGet(entities);
+        batchCount.addAndGet(batches);
+        callCount.incrementAndGet();
+        elapsedNanos.addAndGet(nanos);
+    }
+
+    public long getEntityCount() {
+        return entityCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos.get() / 1000000;
+    }
+
+    /**
+     * 取平均吞吐量(对象数/秒),尚无记录时返回0.
+     */
+    public double getThroughput() {
+        long nanos = elapsedNanos.get();
+        return nanos == 0 ? 0d : entityCount.get() * 1000000000d / nanos;
+    }
+
+    /**
+     * 统计数据清零.
+     */
+    public void reset() {
+        entityCount.set(0);
+        batchCount.set(0);
+        callCount.set(0);
+        elapsedNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchStatistics [entities=" + getEntityCount() + ", batches=" + getBatchCount() + ", calls=" + getCallCount() + ", elapsedMillis="
+                + getElapsedMillis() + ", throughput=" + getThroughput() + "]";
+    }
+}
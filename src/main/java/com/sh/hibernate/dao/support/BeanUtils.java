@@ -6,19 +6,43 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.ReflectionUtils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 扩展Apache Commons BeanUtils, 提供一些反射方面缺失功能的封装.
+ * <p/>
+ * 每个类的Field、getter、方法查找结果首次使用时缓存,Field的读写通过MethodHandle执行,
+ * 查找不到时不再逐层抛出并捕获异常,也不再反复修改setAccessible.
+ * 读写Field的MethodHandle在该Field首次被读写时才生成,无法访问的Field(如JDK模块内未开放的Field)只在被读写时抛出异常.
  *
  * @author springside
  */
 public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
     protected static final Log logger = LogFactory.getLog(BeanUtils.class);
 
+    /**
+     * 各类的反射信息,保存在Class上,不阻止webapp的ClassLoader在重新部署后被回收.
+     */
+    private static final ClassValue<ClassInfo> CLASS_INFO = new ClassValue<ClassInfo>() {
+        @Override
+        protected ClassInfo computeValue(Class<?> type) {
+            return new ClassInfo(type);
+        }
+    };
+
     private BeanUtils() {
     }
 
@@ -42,14 +66,9 @@ public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
     public static Field getDeclaredField(Class clazz, String propertyName) throws NoSuchFieldException {
         Assert.notNull(clazz);
         Assert.hasText(propertyName);
-        for (Class superClass = clazz; superClass != Object.class; superClass = superClass.getSuperclass()) {
-            try {
-                return superClass.getDeclaredField(propertyName);
-            } catch (NoSuchFieldException e) {
-                // Field不在当前类定义,继续向上转型
-            }
-        }
-        throw new NoSuchFieldException("No such field: " + clazz.getName() + '.' + propertyName);
+        Field field = getClassInfo(clazz).fields.get(propertyName);
+        if (field == null) throw new NoSuchFieldException("No such field: " + clazz.getName() + '.' + propertyName);
+        return field;
     }
 
     /**
@@ -60,17 +79,7 @@ public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
     public static Object forceGetProperty(Object object, String propertyName) throws NoSuchFieldException {
         Assert.notNull(object);
         Assert.hasText(propertyName);
-        Field field = getDeclaredField(object, propertyName);
-        boolean accessible = field.isAccessible();
-        field.setAccessible(true);
-        Object result = null;
-        try {
-            result = field.get(object);
-        } catch (IllegalAccessException e) {
-            logger.info("error wont' happen");
-        }
-        field.setAccessible(accessible);
-        return result;
+        return getFieldAccessor(object.getClass(), propertyName).get(object);
     }
 
     /**
@@ -81,15 +90,7 @@ public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
     public static void forceSetProperty(Object object, String propertyName, Object newValue) throws NoSuchFieldException {
         Assert.notNull(object);
         Assert.hasText(propertyName);
-        Field field = getDeclaredField(object, propertyName);
-        boolean accessible = field.isAccessible();
-        field.setAccessible(true);
-        try {
-            field.set(object, newValue);
-        } catch (IllegalAccessException e) {
-            logger.info("Error won't happen");
-        }
-        field.setAccessible(accessible);
+        getFieldAccessor(object.getClass(), propertyName).set(object, newValue);
     }
 
     /**
@@ -106,41 +107,23 @@ public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
             types[i] = params[i].getClass();
         }
         Class clazz = object.getClass();
-        Method method = null;
-        for (Class superClass = clazz; superClass != Object.class; superClass = superClass.getSuperclass()) {
-            try {
-                method = superClass.getDeclaredMethod(methodName, types);
-                break;
-            } catch (NoSuchMethodException e) {
-                // 方法不在当前类定义,继续向上转型
-            }
-        }
+        Method method = getClassInfo(clazz).getDeclaredMethod(methodName, types);
         if (method == null) throw new NoSuchMethodException("No Such Method:" + clazz.getSimpleName() + methodName);
-        boolean accessible = method.isAccessible();
-        method.setAccessible(true);
         Object result = null;
         try {
             result = method.invoke(object, params);
         } catch (Exception e) {
             ReflectionUtils.handleReflectionException(e);
         }
-        method.setAccessible(accessible);
         return result;
     }
 
     /**
-     * 按Filed的类型取得Field列表.
+     * 按Filed的类型取得Field列表,返回的列表不可修改.
      */
     @SuppressWarnings("unchecked")
     public static List<Field> getFieldsByType(Object object, Class type) {
-        List<Field> list = new ArrayList<Field>();
-        Field[] fields = object.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            if (field.getType().isAssignableFrom(type)) {
-                list.add(field);
-            }
-        }
-        return list;
+        return getClassInfo(object.getClass()).getFieldsByType(type);
     }
 
     /**
@@ -170,12 +153,188 @@ public class BeanUtils extends org.apache.commons.beanutils.BeanUtils {
      */
     @SuppressWarnings("unchecked")
     public static Method getGetterMethod(Class type, String fieldName) {
-        try {
-            return type.getMethod(getGetterName(type, fieldName));
-        } catch (NoSuchMethodException e) {
-            logger.error(e.getMessage(), e);
+        return getClassInfo(type).getGetterMethod(getGetterName(type, fieldName));
+    }
+
+    private static ClassInfo getClassInfo(Class clazz) {
+        return CLASS_INFO.get(clazz);
+    }
+
+    private static FieldAccessor getFieldAccessor(Class clazz, String propertyName) throws NoSuchFieldException {
+        return getClassInfo(clazz).getFieldAccessor(getDeclaredField(clazz, propertyName));
+    }
+
+    /**
+     * 一个类的反射信息缓存.
+     */
+    private static final class ClassInfo {
+        private static final Method NO_METHOD = ReflectionUtils.findMethod(Object.class, "hashCode");
+
+        private final Class clazz;
+        private final Field[] declaredFields;
+        private final Map<String, Field> fields; // 含父类的Field,子类的同名Field优先
+        private final ConcurrentMap<String, FieldAccessor> accessors = new ConcurrentHashMap<String, FieldAccessor>();
+        private final ConcurrentMap<Class, List<Field>> fieldsByType = new ConcurrentHashMap<Class, List<Field>>();
+        private final ConcurrentMap<String, Method> getters = new ConcurrentHashMap<String, Method>();
+        private final ConcurrentMap<MethodKey, Method> declaredMethods = new ConcurrentHashMap<MethodKey, Method>();
+
+        ClassInfo(Class clazz) {
+            this.clazz = clazz;
+            this.declaredFields = clazz.getDeclaredFields();
+            Map<String, Field> map = new HashMap<String, Field>();
+            for (Class superClass = clazz; superClass != null && superClass != Object.class; superClass = superClass.getSuperclass()) {
+                for (Field field : superClass.getDeclaredFields()) {
+                    if (!map.containsKey(field.getName())) map.put(field.getName(), field);
+                }
+            }
+            this.fields = map;
+        }
+
+        FieldAccessor getFieldAccessor(Field field) {
+            FieldAccessor accessor = accessors.get(field.getName());
+            if (accessor == null) {
+                accessor = new FieldAccessor(field);
+                accessors.putIfAbsent(field.getName(), accessor);
+            }
+            return accessor;
+        }
+
+        List<Field> getFieldsByType(Class type) {
+            List<Field> list = fieldsByType.get(type);
+            if (list == null) {
+                list = new ArrayList<Field>();
+                for (Field field : declaredFields) {
+                    if (field.getType().isAssignableFrom(type)) list.add(field);
+                }
+                list = Collections.unmodifiableList(list);
+                fieldsByType.putIfAbsent(type, list);
+            }
+            return list;
+        }
+
+        Method getGetterMethod(String getterName) {
+            Method method = getters.get(getterName);
+            if (method == null) {
+                method = NO_METHOD;
+                for (Method candidate : clazz.getMethods()) {
+                    if (candidate.getName().equals(getterName) && candidate.getParameterTypes().length == 0) {
+                        method = candidate;
+                        break;
+                    }
+                }
+                if (method == NO_METHOD) logger.error("No such method: " + clazz.getName() + '.' + getterName + "()");
+                getters.putIfAbsent(getterName, method);
+            }
+            return method == NO_METHOD ? null : method;
+        }
+
+        Method getDeclaredMethod(String methodName, Class[] types) {
+            MethodKey key = new MethodKey(methodName, types);
+            Method method = declaredMethods.get(key);
+            if (method == null) {
+                method = NO_METHOD;
+                for (Class superClass = clazz; superClass != null && superClass != Object.class; superClass = superClass.getSuperclass()) {
+                    Method found = findDeclaredMethod(superClass, methodName, types);
+                    if (found != null) {
+                        // 缓存的Method不对外暴露,设置一次即可
+                        found.setAccessible(true);
+                        method = found;
+                        break;
+                    }
+                }
+                declaredMethods.putIfAbsent(key, method);
+            }
+            return method == NO_METHOD ? null : method;
+        }
+
+        private static Method findDeclaredMethod(Class clazz, String methodName, Class[] types) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (method.getName().equals(methodName) && Arrays.equals(method.getParameterTypes(), types)) return method;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 以MethodHandle读写Field. 生成MethodHandle时对Field的副本调用setAccessible,不修改对外返回的Field.
+     */
+    private static final class FieldAccessor {
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter; // static final的Field不可写,为null
+
+        /**
+         * @throws IllegalStateException Field无法访问时抛出,如JDK 9以上模块内未开放的Field
+         */
+        FieldAccessor(Field field) {
+            this.field = field;
+            boolean isStatic = Modifier.isStatic(field.getModifiers());
+            MethodHandle get;
+            MethodHandle set = null;
+            try {
+                Field copy = field.getDeclaringClass().getDeclaredField(field.getName());
+                copy.setAccessible(true);
+                get = LOOKUP.unreflectGetter(copy);
+                if (isStatic) get = MethodHandles.dropArguments(get, 0, Object.class);
+                get = get.asType(GETTER_TYPE);
+                if (!(isStatic && Modifier.isFinal(field.getModifiers()))) {
+                    set = LOOKUP.unreflectSetter(copy);
+                    if (isStatic) set = MethodHandles.dropArguments(set, 0, Object.class);
+                    set = set.asType(SETTER_TYPE);
+                }
+            } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+                // JDK 9以上setAccessible失败时抛出的InaccessibleObjectException是RuntimeException
+                throw new IllegalStateException("Cannot access field: " + field, e);
+            }
+            this.getter = get;
+            this.setter = set;
+        }
+
+        Object get(Object object) {
+            try {
+                return getter.invokeExact(object);
+            } catch (Throwable e) {
+                ReflectionUtils.rethrowRuntimeException(e);
+                return null;
+            }
+        }
+
+        void set(Object object, Object value) {
+            if (setter == null) throw new IllegalStateException("Field is not writable: " + field);
+            try {
+                setter.invokeExact(object, value);
+            } catch (Throwable e) {
+                ReflectionUtils.rethrowRuntimeException(e);
+            }
+        }
+    }
+
+    private static final class MethodKey {
+        private final String name;
+        private final Class[] types;
+        private final int hash;
+
+        MethodKey(String name, Class[] types) {
+            this.name = name;
+            this.types = types;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof MethodKey)) return false;
+            MethodKey other = (MethodKey) obj;
+            return name.equals(other.name) && Arrays.equals(types, other.types);
         }
-        return null;
     }
 }
- 
\ No newline at end of file
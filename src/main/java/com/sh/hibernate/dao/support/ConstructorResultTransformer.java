@@ -0,0 +1,168 @@
+package com.sh.hibernate.dao.support;
+
+import org.hibernate.HibernateException;
+import org.hibernate.transform.ResultTransformer;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 把投影查询的每行结果直接传给DTO构造函数的ResultTransformer.
+ * <p/>
+ * 按查询的列数与列值类型选取DTO的构造函数,数值列按参数类型转换(如SQL查询返回的BigInteger转为Long).
+ * 参数个数相同的构造函数以MethodHandle按列数缓存;只有一个时每行直接调用,有多个时按每行的列值类型选取,
+ * 某行同时与多个构造函数兼容(如null列对应的参数类型不同)时抛出HibernateException,不会因首行的类型选错构造函数.
+ * 不加载Entity,也不像Transformers.ALIAS_TO_ENTITY_MAP那样每行建一个Map. 每个DTO类型共用一个实例.
+ * <pre>
+ * List&lt;UserSummary&gt; list = dao.findProjection(UserSummary.class, "select u.id, u.name from Users u");
+ * </pre>
+ *
+ * @param <T> DTO类型
+ */
+@SuppressWarnings({"serial", "unchecked"})
+public class ConstructorResultTransformer<T> implements ResultTransformer {
+    private static final ConcurrentMap<Class, ConstructorResultTransformer> INSTANCES = new ConcurrentHashMap<Class, ConstructorResultTransformer>();
+
+    private final Class<T> resultClass;
+    private final transient ConcurrentMap<Integer, List<Instantiator>> constructors = new ConcurrentHashMap<Integer, List<Instantiator>>(); // 按列数缓存
+
+    private ConstructorResultTransformer(Class<T> resultClass) {
+        this.resultClass = resultClass;
+    }
+
+    /**
+     * 取DTO类型对应的ResultTransformer.
+     */
+    public static <T> ConstructorResultTransformer<T> forClass(Class<T> resultClass) {
+        Assert.notNull(resultClass);
+        ConstructorResultTransformer<T> transformer = INSTANCES.get(resultClass);
+        if (transformer == null) {
+            transformer = new ConstructorResultTransformer<T>(resultClass);
+            ConstructorResultTransformer<T> existing = INSTANCES.putIfAbsent(resultClass, transformer);
+            if (existing != null) transformer = existing;
+        }
+        return transformer;
+    }
+
+    public Object transformTuple(Object[] tuple, String[] aliases) {
+        List<Instantiator> candidates = constructors.get(tuple.length);
+        if (candidates == null) {
+            candidates = findConstructors(tuple.length);
+            constructors.putIfAbsent(tuple.length, candidates);
+        }
+        Instantiator constructor = candidates.size() == 1 ? candidates.get(0) : selectConstructor(candidates, tuple);
+        try {
+            return constructor.newInstance(tuple);
+        } catch (Throwable e) {
+            throw new HibernateException("Could not instantiate " + resultClass.getName(), e);
+        }
+    }
+
+    public List transformList(List collection) {
+        return collection;
+    }
+
+    /**
+     * 取参数个数与列数相同的所有构造函数.
+     */
+    private List<Instantiator> findConstructors(int columns) {
+        List<Instantiator> list = new ArrayList<Instantiator>();
+        for (Constructor<?> constructor : resultClass.getDeclaredConstructors()) {
+            if (constructor.getParameterTypes().length != columns) continue;
+            ReflectionUtils.makeAccessible(constructor);
+            try {
+                list.add(new Instantiator(MethodHandles.lookup().unreflectConstructor(constructor), constructor.getParameterTypes()));
+            } catch (IllegalAccessException e) {
+                throw new HibernateException("Could not access constructor " + constructor, e);
+            }
+        }
+        if (list.isEmpty()) throw new HibernateException("No constructor of " + resultClass.getName() + " takes " + columns + " selected columns");
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 在参数个数相同的多个构造函数中选取与本行各列值兼容的唯一一个,没有或不止一个时抛出异常.
+     */
+    private Instantiator selectConstructor(List<Instantiator> candidates, Object[] tuple) {
+        Instantiator selected = null;
+        for (Instantiator candidate : candidates) {
+            if (!candidate.accepts(tuple)) continue;
+            if (selected != null)
+                throw new HibernateException("More than one constructor of " + resultClass.getName() + " matches columns " + describe(tuple)
+                        + ", cast the columns in the query or remove the ambiguous constructor");
+            selected = candidate;
+        }
+        if (selected == null) throw new HibernateException("No constructor of " + resultClass.getName() + " matches columns " + describe(tuple));
+        return selected;
+    }
+
+    private static String describe(Object[] tuple) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < tuple.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(tuple[i] == null ? "null" : tuple[i].getClass().getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+
+    private static boolean isNumberConvertible(Class<?> type, Object value) {
+        return value instanceof Number && Number.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(type));
+    }
+
+    private Object readResolve() {
+        return forClass(resultClass);
+    }
+
+    /**
+     * 选定的构造函数及其参数类型.
+     */
+    private static final class Instantiator {
+        private final MethodHandle handle;
+        private final Class<?>[] types; // 基本类型已转为包装类型
+        private final boolean[] primitives; // 参数是否为基本类型
+
+        Instantiator(MethodHandle handle, Class<?>[] parameterTypes) {
+            this.handle = handle;
+            this.types = new Class<?>[parameterTypes.length];
+            this.primitives = new boolean[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                types[i] = ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[i]);
+                primitives[i] = parameterTypes[i].isPrimitive();
+            }
+        }
+
+        /**
+         * 各列值与参数类型是否兼容,null列与任何非基本类型的参数兼容.
+         */
+        boolean accepts(Object[] tuple) {
+            for (int i = 0; i < types.length; i++) {
+                if (tuple[i] == null ? primitives[i] : !(types[i].isInstance(tuple[i]) || isNumberConvertible(types[i], tuple[i]))) return false;
+            }
+            return true;
+        }
+
+        /**
+         * 以本行的列值调用构造函数,需要转换的数值列在副本中转换,不修改Hibernate传入的数组.
+         */
+        Object newInstance(Object[] tuple) throws Throwable {
+            Object[] args = tuple;
+            for (int i = 0; i < tuple.length; i++) {
+                if (tuple[i] instanceof Number && !types[i].isInstance(tuple[i]) && Number.class.isAssignableFrom(types[i])) {
+                    if (args == tuple) args = tuple.clone();
+                    args[i] = NumberUtils.convertNumberToTargetClass((Number) tuple[i], (Class<Number>) types[i]);
+                }
+            }
+            return handle.invokeWithArguments(args);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sh.hibernate.dao.support;
+
+/**
+ * 分页查询时总记录数的取得方式.
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#pagedQuery(String, int, int, CountMode, Object[])
+ */
+public enum CountMode {
+    /**
+     * 每次执行count查询.
+     */
+    EXACT,
+    /**
+     * 按规范化的hql与参数缓存count结果,在缓存有效期内翻页不再执行count查询. 经DAO的写操作提交后缓存的count全部失效.
+     *
+     * @see QueryResultCache#getCount(java.util.function.Supplier, Object...)
+     */
+    CACHED,
+    /**
+     * 不执行count查询,多取一条记录判断是否有下一页,总记录数为{@link Page#UNKNOWN_COUNT}.
+     */
+    NONE,
+    /**
+     * 首次取总记录数时才在新的Session中执行count查询,不取总记录数时不执行.
+     */
+    LAZY,
+    /**
+     * 在另一线程、新的Session中与数据查询同时执行count查询,取总记录数时等待其完成.
+     * 须为DAO设置countExecutor;本页不满时count被取消.
+     *
+     * @see com.sh.hibernate.dao.HibernateGenericDao#setCountExecutor(java.util.concurrent.Executor)
+     */
+    ASYNC
+}
@@ -0,0 +1,116 @@
+package com.sh.hibernate.dao.support;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 可重用的Criteria查询定义. 保存实体类型、查询条件、排序与Projection,按需在任意Session上生成Criteria.
+ * <p/>
+ * 分页时由同一定义分别生成count查询与数据查询,不必修改CriteriaImpl的内部状态,
+ * 两个查询也可以在不同的Session上同时执行.
+ * <pre>
+ * CriteriaSpec&lt;User&gt; spec = CriteriaSpec.forClass(User.class).add(Restrictions.eq("status", "0")).addOrder(Order.asc("id"));
+ * Page&lt;User&gt; page = dao.pagedQuery(spec, 1, 20);
+ * </pre>
+ *
+ * @param <T> 查询结果的类型,设置Projection后为Projection的结果类型
+ * @see com.sh.hibernate.dao.HibernateGenericDao#pagedQuery(CriteriaSpec, int, int)
+ */
+@SuppressWarnings("unchecked")
+public class CriteriaSpec<T> {
+    private final Class entityClass;
+    private final List<Criterion> criterions = new ArrayList<Criterion>();
+    private final List<Order> orders = new ArrayList<Order>();
+    private Projection projection;
+
+    public CriteriaSpec(Class<T> entityClass) {
+        Assert.notNull(entityClass);
+        this.entityClass = entityClass;
+    }
+
+    public static <T> CriteriaSpec<T> forClass(Class<T> entityClass) {
+        return new CriteriaSpec<T>(entityClass);
+    }
+
+    /**
+     * 加入查询条件.
+     */
+    public CriteriaSpec<T> add(Criterion... criterions) {
+        for (Criterion c : criterions) {
+            this.criterions.add(c);
+        }
+        return this;
+    }
+
+    /**
+     * 加入排序条件,count查询不使用.
+     */
+    public CriteriaSpec<T> addOrder(Order order) {
+        Assert.notNull(order);
+        orders.add(order);
+        return this;
+    }
+
+    /**
+     * 设置数据查询的Projection,count查询不使用. 返回的查询定义以R为结果类型.
+     */
+    public <R> CriteriaSpec<R> setProjection(Projection projection) {
+        this.projection = projection;
+        return (CriteriaSpec<R>) this;
+    }
+
+    /**
+     * 在指定Session上生成只含查询条件的count查询.
+     */
+    public Criteria createCountCriteria(Session session) {
+        Criteria criteria = createBaseCriteria(session);
+        criteria.setProjection(Projections.rowCount());
+        return criteria;
+    }
+
+    /**
+     * 在指定Session上生成含排序与Projection的数据查询.
+     */
+    public Criteria createCriteria(Session session) {
+        Criteria criteria = createBaseCriteria(session);
+        for (Order order : orders) {
+            criteria.addOrder(order);
+        }
+        if (projection != null) criteria.setProjection(projection);
+        return criteria;
+    }
+
+    private Criteria createBaseCriteria(Session session) {
+        Assert.notNull(session);
+        Criteria criteria = session.createCriteria(entityClass);
+        for (Criterion c : criterions) {
+            criteria.add(c);
+        }
+        return criteria;
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    public List<Criterion> getCriterions() {
+        return Collections.unmodifiableList(criterions);
+    }
+
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    public Projection getProjection() {
+        return projection;
+    }
+}
@@ -0,0 +1,181 @@
+package com.sh.hibernate.dao.support;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO操作的耗时与行数统计,以及慢查询日志.
+ * <p/>
+ * 按"前缀.Entity.操作"在MetricRegistry中登记以下指标,经JmxReporter等Reporter对外暴露:
+ * <ul>
+ * <li>前缀.Entity.操作 - Timer,调用次数、速率与耗时分布(p50/p75/p95/p99/p999)</li>
+ * <li>前缀.Entity.操作.rows - Histogram,每次调用返回或写入的行数分布</li>
+ * <li>前缀.Entity.rows - Meter,该Entity读写行数的速率</li>
+ * <li>前缀.Entity.操作.slow - Counter,超过慢查询阈值的次数</li>
+ * </ul>
+ * 耗时超过{@link #setSlowQueryThreshold(long)}的调用以WARN级别写入"com.sh.hibernate.dao.SlowQuery"日志,
+ * 内容为hql与各参数的类型(不含参数值). 指标对象按Entity与操作缓存,每次调用不再拼接名称和查找Registry.
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#setDaoMetrics(DaoMetrics)
+ */
+public class DaoMetrics {
+    private static final Log slowQueryLog = LogFactory.getLog("com.sh.hibernate.dao.SlowQuery");
+
+    /**
+     * 默认的指标名前缀与慢查询阈值(毫秒).
+     */
+    public static final String DEFAULT_PREFIX = "dao";
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 500;
+
+    /**
+     * 无法确定Entity的查询(如无from子句的sql)的统计分组名.
+     */
+    public static final String UNKNOWN_ENTITY = "unknown";
+
+    private final MetricRegistry registry;
+    private final String prefix;
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD);
+
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> operations = new ConcurrentHashMap<String, ConcurrentMap<String, OperationMetrics>>();
+    private final ConcurrentMap<String, Meter> rowMeters = new ConcurrentHashMap<String, Meter>();
+
+    public DaoMetrics(MetricRegistry registry) {
+        this(registry, DEFAULT_PREFIX);
+    }
+
+    public DaoMetrics(MetricRegistry registry, String prefix) {
+        Assert.notNull(registry);
+        Assert.hasText(prefix);
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    /**
+     * 记录一次DAO调用.
+     *
+     * @param entityName   Entity的短类名,为null时记入{@link #UNKNOWN_ENTITY}
+     * @param operation    操作名,如load、findBy、pagedQuery
+     * @param elapsedNanos 耗时(纳秒)
+     * @param rows         返回或写入的行数,小于0时不记录
+     * @param query        hql或sql,用于慢查询日志,可为null
+     * @param values       绑定的参数,慢查询日志只输出其类型
+     */
+    public void record(String entityName, String operation, long elapsedNanos, int rows, String query, Object[] values) {
+        if (entityName == null) entityName = UNKNOWN_ENTITY;
+        OperationMetrics metrics = getOperationMetrics(entityName, operation);
+        metrics.timer.update(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            metrics.rows.update(rows);
+            metrics.rowMeter.mark(rows);
+        }
+        if (elapsedNanos >= slowQueryThresholdNanos) {
+            metrics.slow.inc();
+            if (slowQueryLog.isWarnEnabled()) {
+                slowQueryLog.warn(entityName + '.' + operation + " took " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms, rows=" + rows
+                        + (query == null ? "" : ", query=" + HqlParser.normalize(query)) + ", params=" + describeParameters(values));
+            }
+        }
+    }
+
+    /**
+     * 估算DAO调用结果的行数:集合取元素个数,Page取当前页行数,数值取其值(批量写入的条数),null为0,其余对象为1.
+     */
+    public static int countRows(Object result) {
+        if (result == null) return 0;
+        if (result instanceof Collection) return ((Collection) result).size();
+        if (result instanceof Page) return ((Page) result).getResult().size();
+        if (result instanceof Number) return ((Number) result).intValue();
+        return 1;
+    }
+
+    /**
+     * 输出参数的类型列表,如[Long, String, null, ArrayList(3)],不含参数值.
+     */
+    public static String describeParameters(Object[] values) {
+        if (values == null || values.length == 0) return "[]";
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            Object value = values[i];
+            if (value == null) sb.append("null");
+            else {
+                sb.append(value.getClass().getSimpleName());
+                if (value instanceof Collection) sb.append('(').append(((Collection) value).size()).append(')');
+                else if (value instanceof Map) sb.append('(').append(((Map) value).keySet()).append(')');
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private OperationMetrics getOperationMetrics(String entityName, String operation) {
+        ConcurrentMap<String, OperationMetrics> byOperation = operations.get(entityName);
+        if (byOperation == null) {
+            byOperation = new ConcurrentHashMap<String, OperationMetrics>();
+            ConcurrentMap<String, OperationMetrics> existing = operations.putIfAbsent(entityName, byOperation);
+            if (existing != null) byOperation = existing;
+        }
+        OperationMetrics metrics = byOperation.get(operation);
+        if (metrics == null) {
+            metrics = new OperationMetrics(entityName, operation);
+            OperationMetrics existing = byOperation.putIfAbsent(operation, metrics);
+            if (existing != null) metrics = existing;
+        }
+        return metrics;
+    }
+
+    private Meter getRowMeter(String entityName) {
+        Meter meter = rowMeters.get(entityName);
+        if (meter == null) {
+            // Registry的meter()对同名指标返回同一实例
+            meter = registry.meter(MetricRegistry.name(prefix, entityName, "rows"));
+            rowMeters.putIfAbsent(entityName, meter);
+        }
+        return meter;
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    public long getSlowQueryThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    /**
+     * 设置慢查询阈值(毫秒).
+     */
+    public void setSlowQueryThreshold(long slowQueryThreshold) {
+        Assert.isTrue(slowQueryThreshold >= 0, "slowQueryThreshold should not be negative");
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold);
+    }
+
+    /**
+     * 一个Entity上一种操作的指标.
+     */
+    private final class OperationMetrics {
+        final Timer timer;
+        final Histogram rows;
+        final Meter rowMeter;
+        final Counter slow;
+
+        OperationMetrics(String entityName, String operation) {
+            String name = MetricRegistry.name(prefix, entityName, operation);
+            this.timer = registry.timer(name);
+            this.rows = registry.histogram(MetricRegistry.name(name, "rows"));
+            this.rowMeter = getRowMeter(entityName);
+            this.slow = registry.counter(MetricRegistry.name(name, "slow"));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.sh.hibernate.dao.support;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.util.Assert;
+import org.springframework.util.NumberUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Entity的映射信息缓存,包括主键名与基于Hibernate ClassMetadata的属性存取.
+ * <p/>
+ * 由DAO按Entity类型缓存(见{@link com.sh.hibernate.dao.HibernateGenericDao#getEntityMetadata(Class)}),
+ * 随DAO及其SessionFactory一起释放,避免每次取主键都查询SessionFactory并经由commons-beanutils反射.
+ * 未被Hibernate映射的属性仍通过PropertyUtils存取.
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#getEntityMetadata(Class)
+ */
+@SuppressWarnings("unchecked")
+public class EntityMetadata {
+    private final Class entityClass;
+    private final ClassMetadata classMetadata;
+    private final String idName;
+    private final Set<String> propertyNames; // Hibernate映射的非主键属性名
+
+    private EntityMetadata(Class entityClass, ClassMetadata classMetadata) {
+        this.entityClass = entityClass;
+        this.classMetadata = classMetadata;
+        this.idName = classMetadata.getIdentifierPropertyName();
+        this.propertyNames = new HashSet<String>(Arrays.asList(classMetadata.getPropertyNames()));
+    }
+
+    /**
+     * 从SessionFactory读取Entity的映射信息,不做缓存,由调用者按Entity类型缓存.
+     */
+    public static EntityMetadata forClass(SessionFactory sessionFactory, Class entityClass) {
+        Assert.notNull(sessionFactory);
+        Assert.notNull(entityClass);
+        ClassMetadata meta = sessionFactory.getClassMetadata(entityClass);
+        Assert.notNull(meta, "Class " + entityClass + " not define in hibernate session factory.");
+        Assert.hasText(meta.getIdentifierPropertyName(), entityClass.getSimpleName() + " has no identifier property define.");
+        return new EntityMetadata(entityClass, meta);
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    public ClassMetadata getClassMetadata() {
+        return classMetadata;
+    }
+
+    /**
+     * 取主键名.
+     */
+    public String getIdName() {
+        return idName;
+    }
+
+    /**
+     * 取对象的主键值,对未初始化的代理对象不会触发加载.
+     */
+    public Serializable getId(Object entity) {
+        return getId(entity, null);
+    }
+
+    /**
+     * 取对象的主键值,对未初始化的代理对象不会触发加载.
+     *
+     * @param session 对象所在的Session,复合主键(@IdClass)的值取自Session,普通主键可为null
+     */
+    public Serializable getId(Object entity, SessionImplementor session) {
+        Assert.notNull(entity);
+        if (entity instanceof HibernateProxy) return ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier();
+        return classMetadata.getIdentifier(entity, session);
+    }
+
+    /**
+     * 把主键值转换为映射的主键类型,如Integer转为Long、数字字符串转为数字,类型相同时原样返回.
+     *
+     * @throws IllegalArgumentException 无法转换时抛出
+     */
+    public Serializable toIdentifier(Object id) {
+        Assert.notNull(id);
+        Class idClass = classMetadata.getIdentifierType().getReturnedClass();
+        if (idClass.isInstance(id)) return (Serializable) id;
+        if (Number.class.isAssignableFrom(idClass)) {
+            if (id instanceof Number) return (Serializable) NumberUtils.convertNumberToTargetClass((Number) id, idClass);
+            if (id instanceof String) return (Serializable) NumberUtils.parseNumber((String) id, idClass);
+        }
+        if (idClass == String.class) return id.toString();
+        throw new IllegalArgumentException("Cannot convert id " + id + " of " + id.getClass().getName() + " to " + idClass.getName() + " for " + entityClass.getName());
+    }
+
+    /**
+     * 取对象的属性值.
+     */
+    public Object getPropertyValue(Object entity, String propertyName) {
+        if (idName.equals(propertyName)) return getId(entity);
+        if (propertyNames.contains(propertyName)) return classMetadata.getPropertyValue(entity, propertyName);
+        try {
+            return PropertyUtils.getProperty(entity, propertyName);
+        } catch (Exception e) {
+            ReflectionUtils.handleReflectionException(e);
+            return null;
+        }
+    }
+
+    /**
+     * 设置对象的属性值.
+     */
+    public void setPropertyValue(Object entity, String propertyName, Object value) {
+        if (propertyNames.contains(propertyName)) {
+            classMetadata.setPropertyValue(entity, propertyName, value);
+            return;
+        }
+        try {
+            PropertyUtils.setProperty(entity, propertyName, value);
+        } catch (Exception e) {
+            ReflectionUtils.handleReflectionException(e);
+        }
+    }
+}
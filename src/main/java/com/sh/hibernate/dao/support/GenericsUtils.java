@@ -2,18 +2,44 @@ package com.sh.hibernate.dao.support;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.ResolvableType;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Generics的util类.
+ * <p/>
+ * 解析结果按Class缓存,同一个类的DAO无论创建多少个实例都只解析一次.
  *
  * @author springside
  */
 public class GenericsUtils {
     private static final Log log = LogFactory.getLog(GenericsUtils.class);
 
+    private static final Class[] NONE = new Class[0];
+
+    /**
+     * 各类最近的带范型参数的父类(没有时为接口)的实际参数类型,无法确定的参数为null.
+     */
+    private static final ClassValue<Class[]> SUPER_TYPE_ARGUMENTS = new ClassValue<Class[]>() {
+        @Override
+        protected Class[] computeValue(Class<?> type) {
+            ResolvableType generic = findGenericSuperType(ResolvableType.forClass(type));
+            return generic == null ? NONE : generic.resolveGenerics(null);
+        }
+    };
+
+    /**
+     * 各类实现指定范型接口时的实际参数类型.
+     */
+    private static final ClassValue<ConcurrentMap<Class, Class[]>> INTERFACE_TYPE_ARGUMENTS = new ClassValue<ConcurrentMap<Class, Class[]>>() {
+        @Override
+        protected ConcurrentMap<Class, Class[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<Class, Class[]>();
+        }
+    };
+
     private GenericsUtils() {
     }
 
@@ -30,6 +56,9 @@ public class GenericsUtils {
 
     /**
      * 通过反射,获得定义Class时声明的父类的范型参数的类型. 如public BookManager extends GenricManager<Book>
+     * <p/>
+     * 父类没有范型参数时继续向上查找,如public SpecialBookManager extends BookManager;
+     * 父类中都没有时查找实现的范型接口,如public BookManager implements IEntityDao<Book>.
      *
      * @param clazz clazz The class to introspect
      * @param index the Index of the generic ddeclaration,start from 0.
@@ -37,22 +66,62 @@ public class GenericsUtils {
      */
     @SuppressWarnings("unchecked")
     public static Class getSuperClassGenricType(Class clazz, int index) {
-        Type genType = clazz.getGenericSuperclass();
-        if (!(genType instanceof ParameterizedType)) {
+        Class[] params = SUPER_TYPE_ARGUMENTS.get(clazz);
+        if (params.length == 0) {
             log.warn(clazz.getSimpleName() + "'s superclass not ParameterizedType");
             return Object.class;
         }
-        Type[] params = ((ParameterizedType) genType).getActualTypeArguments();
+        return select(clazz, params, index);
+    }
+
+    /**
+     * 获得Class实现指定范型接口时的范型参数的类型. 如public BookManager implements IEntityDao<Book>
+     *
+     * @param clazz            The class to introspect
+     * @param genericInterface 范型接口
+     * @param index            the Index of the generic ddeclaration,start from 0.
+     * @return the index generic declaration, or <code>Object.class</code> if cannot be determined
+     */
+    @SuppressWarnings("unchecked")
+    public static Class getInterfaceGenricType(Class clazz, Class genericInterface, int index) {
+        ConcurrentMap<Class, Class[]> cache = INTERFACE_TYPE_ARGUMENTS.get(clazz);
+        Class[] params = cache.get(genericInterface);
+        if (params == null) {
+            ResolvableType type = ResolvableType.forClass(clazz).as(genericInterface);
+            params = type == ResolvableType.NONE ? NONE : type.resolveGenerics(null);
+            cache.putIfAbsent(genericInterface, params);
+        }
+        if (params.length == 0) {
+            log.warn(clazz.getSimpleName() + " not implements ParameterizedType " + genericInterface.getSimpleName());
+            return Object.class;
+        }
+        return select(clazz, params, index);
+    }
+
+    private static Class select(Class clazz, Class[] params, int index) {
         if (index >= params.length || index < 0) {
             log.warn("Index: " + index + ", Size of " + clazz.getSimpleName() + "'s Parameterized Type: " + params.length);
             return Object.class;
         }
-        if (!(params[index] instanceof Class)) {
+        if (params[index] == null) {
             log.warn(clazz.getSimpleName() + " not set the actual class on superclass generic parameter");
             return Object.class;
         }
-        return (Class) params[index];
+        return params[index];
     }
-}
-  
 
+    /**
+     * 沿父类向上查找第一个带范型参数的父类,没有时按父类顺序查找带范型参数的接口.
+     */
+    private static ResolvableType findGenericSuperType(ResolvableType type) {
+        for (ResolvableType superType = type.getSuperType(); superType != ResolvableType.NONE; superType = superType.getSuperType()) {
+            if (superType.hasGenerics()) return superType;
+        }
+        for (ResolvableType current = type; current != ResolvableType.NONE; current = current.getSuperType()) {
+            for (ResolvableType ifc : current.getInterfaces()) {
+                if (ifc.hasGenerics()) return ifc;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package com.sh.hibernate.dao.support;
+
+import org.springframework.util.Assert;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * hql的解析与改写工具,结果按原始hql缓存.
+ * <p/>
+ * 分页查询每次都要由hql派生count语句,热点分页接口的hql基本固定,缓存后每次请求不再做字符串处理与正则匹配.
+ * 缓存为全局共享、有容量上限的LRU.
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#pagedQuery(String, int, int, Object[])
+ */
+public class HqlParser {
+    /**
+     * 解析结果缓存的默认容量.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 2000;
+
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("\\bfrom\\s+(?:[\\w$]+\\.)*([\\w$]+)", Pattern.CASE_INSENSITIVE);
+
+    private static volatile LruCache<String, ParsedHql> cache = new LruCache<String, ParsedHql>(DEFAULT_CACHE_SIZE);
+
+    private HqlParser() {
+    }
+
+    /**
+     * 解析hql,已解析过的hql直接返回缓存结果.
+     */
+    public static ParsedHql parse(String hql) {
+        Assert.hasText(hql);
+        LruCache<String, ParsedHql> current = cache;
+        ParsedHql parsed = current.get(hql);
+        if (parsed == null) {
+            int orderBy = indexOfOrderBy(hql);
+            String orderByClause = orderBy < 0 ? null : hql.substring(orderBy);
+            String countHql = " select count (*) " + removeSelect(removeOrders(hql));
+            Matcher entity = ENTITY_PATTERN.matcher(hql);
+            String entityName = entity.find() ? entity.group(1) : null;
+            parsed = new ParsedHql(hql, normalize(hql), countHql, orderByClause, entityName);
+            current.put(hql, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * 取解析结果缓存,可查看命中率.
+     */
+    public static LruCache<String, ParsedHql> getCache() {
+        return cache;
+    }
+
+    /**
+     * 重新设置缓存容量,已缓存的解析结果被丢弃.
+     */
+    public static void setCacheSize(int maxSize) {
+        cache = new LruCache<String, ParsedHql>(maxSize);
+    }
+
+    /**
+     * 去除hql的select 子句，未考虑union的情况,用于pagedQuery.
+     */
+    public static String removeSelect(String hql) {
+        Assert.hasText(hql);
+        int beginPos = hql.toLowerCase().indexOf("from");
+        Assert.isTrue(beginPos != -1, " hql : " + hql + " must has a keyword 'from'");
+        return hql.substring(beginPos);
+    }
+
+    /**
+     * 去除hql末尾的orderby 子句，用于pagedQuery. 子查询中与字符串常量中的order by不受影响.
+     */
+    public static String removeOrders(String hql) {
+        Assert.hasText(hql);
+        int orderBy = indexOfOrderBy(hql);
+        return orderBy < 0 ? hql : hql.substring(0, orderBy);
+    }
+
+    /**
+     * 查找最外层(不在括号与单引号字符串中)的最后一个order by的位置,没有时返回-1.
+     */
+    static int indexOfOrderBy(String hql) {
+        int found = -1;
+        int depth = 0;
+        boolean quoted = false;
+        int length = hql.length();
+        for (int i = 0; i < length; i++) {
+            char c = hql.charAt(i);
+            if (quoted) {
+                // 字符串中的''为转义的单引号,两次切换后仍在字符串中
+                if (c == '\'') quoted = false;
+            } else if (c == '\'') {
+                quoted = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth > 0) depth--;
+            } else if (depth == 0 && (c == 'o' || c == 'O') && isOrderBy(hql, i)) {
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * pos处是否为独立的order by关键字.
+     */
+    private static boolean isOrderBy(String hql, int pos) {
+        if (pos > 0 && isIdentifierPart(hql.charAt(pos - 1))) return false;
+        if (!hql.regionMatches(true, pos, "order", 0, 5)) return false;
+        int i = pos + 5;
+        int length = hql.length();
+        if (i >= length || !Character.isWhitespace(hql.charAt(i))) return false;
+        while (i < length && Character.isWhitespace(hql.charAt(i))) i++;
+        if (!hql.regionMatches(true, i, "by", 0, 2)) return false;
+        return i + 2 == length || !isIdentifierPart(hql.charAt(i + 2));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isJavaIdentifierPart(c) || c == '.';
+    }
+
+    /**
+     * 规范化hql,合并连续空白并去掉首尾空白,使仅空白不同的hql共用缓存.
+     */
+    public static String normalize(String hql) {
+        StringBuilder sb = new StringBuilder(hql.length());
+        boolean space = false;
+        for (int i = 0; i < hql.length(); i++) {
+            char c = hql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                space = false;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package com.sh.hibernate.dao.support;
+
+import java.util.List;
+
+/**
+ * 键集(seek)分页对象. 不含总记录数,携带本页最后一条记录的排序键作为续查令牌.
+ * <p/>
+ * 取下一页时把{@link #getNextKeys()}原样传回查询函数即可,不需要页号与offset.
+ *
+ * @param <T> 记录的类型
+ * @see com.sh.hibernate.dao.HibernateGenericDao#seekQuery(Class, int, String[], boolean, Object[], org.hibernate.criterion.Criterion[])
+ */
+@SuppressWarnings("serial")
+public class KeysetPage<T> extends Page<T> {
+    private Object[] nextKeys; // 本页最后一条记录的排序键,本页无数据时为null
+
+    /**
+     * @param pageSize    本页容量
+     * @param data        本页包含的数据
+     * @param hasNextPage 是否有下一页
+     * @param nextKeys    本页最后一条记录的排序键
+     */
+    public KeysetPage(int pageSize, List<T> data, boolean hasNextPage, Object[] nextKeys) {
+        super(0, pageSize, data, hasNextPage);
+        this.nextKeys = nextKeys;
+    }
+
+    /**
+     * 取续查令牌,即本页最后一条记录的排序键,与查询时的排序属性一一对应.
+     */
+    public Object[] getNextKeys() {
+        return nextKeys;
+    }
+}
@@ -0,0 +1,152 @@
+package com.sh.hibernate.dao.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有容量上限的LRU缓存,可选按写入时间过期,并统计命中率.
+ * <p/>
+ * 供DAO层缓存查询结果与count等使用,所有操作线程安全.
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class LruCache<K, V> {
+    private final int maxSize; // 最大条目数
+    private final long ttlMillis; // 过期时间(毫秒),小于等于0表示不过期
+    private final Map<K, Entry<V>> map;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 构造不过期的LRU缓存.
+     */
+    public LruCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param maxSize   最大条目数,超出后淘汰最久未访问的条目
+     * @param ttlMillis 条目写入后的存活时间(毫秒),小于等于0表示不过期
+     */
+    public LruCache(final int maxSize, long ttlMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取缓存值,不存在或已过期时返回null.
+     */
+    public V get(K key) {
+        V value = null;
+        synchronized (map) {
+            Entry<V> entry = map.get(key);
+            if (entry != null) {
+                if (entry.isExpired()) map.remove(key);
+                else value = entry.value;
+            }
+        }
+        if (value == null) missCount.incrementAndGet();
+        else hitCount.incrementAndGet();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        synchronized (map) {
+            map.put(key, new Entry<V>(value, expireAt));
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 取命中率,尚无访问时返回0.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    /**
+     * 统计数据清零.
+     */
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LruCache [size=" + size() + ", maxSize=" + maxSize + ", ttlMillis=" + ttlMillis + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + ", evictions=" + getEvictionCount() + ", hitRate=" + getHitRate() + "]";
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expireAt;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired() {
+            return expireAt != Long.MAX_VALUE && System.currentTimeMillis() > expireAt;
+        }
+    }
+}
@@ -1,27 +1,42 @@
 package com.sh.hibernate.dao.support;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * 分页对象. 包含当前页数据及分页信息如总记录数.
+ * <p/>
+ * 总记录数可以延迟取得: 构造时传入异步执行的count查询或首次使用时才执行的count查询,
+ * 取总记录数、总页数或序列化时才等待其结果,不使用总记录数的调用者不必承担count查询的开销.
  *
+ * @param <T> 记录的类型
  * @author springside
  */
 @SuppressWarnings("serial")
-public class Page implements Serializable {
+public class Page<T> implements Serializable {
+    /**
+     * 总记录数未知(未执行count查询)时的取值.
+     */
+    public static final long UNKNOWN_COUNT = -1;
     private static int DEFAULT_PAGE_SIZE = 20;
     private int pageSize = DEFAULT_PAGE_SIZE; // 每页的记录数
     private long start; // 当前页第一条数据在List中的位置,从0开始
-    private Object data; // 当前页中存放的记录,类型一般为List
+    private List<T> data; // 当前页中存放的记录
     private long totalCount; // 总记录数
+    private boolean nextPage; // 总记录数未知时,是否有下一页
+    private transient CompletableFuture<Long> countFuture; // 执行中的count查询
+    private transient Supplier<Long> countLoader; // 尚未执行的count查询
 
     /**
      * 构造方法，只构造空页.
      */
-    @SuppressWarnings("unchecked")
     public Page() {
-        this(0, 0, DEFAULT_PAGE_SIZE, new ArrayList());
+        this(0, 0, DEFAULT_PAGE_SIZE, new ArrayList<T>());
     }
 
     /**
@@ -32,13 +47,52 @@ public class Page implements Serializable {
      * @param pageSize  本页容量
      * @param data      本页包含的数据
      */
-    public Page(long start, long totalSize, int pageSize, Object data) {
+    public Page(long start, long totalSize, int pageSize, List<T> data) {
         this.pageSize = pageSize;
         this.start = start;
         this.totalCount = totalSize;
         this.data = data;
     }
 
+    /**
+     * 不含总记录数的构造方法,用于不执行count查询的分页,是否有下一页由多取一条记录判断.
+     *
+     * @param start       本页数据在数据库中的起始位置
+     * @param pageSize    本页容量
+     * @param data        本页包含的数据
+     * @param hasNextPage 是否有下一页
+     */
+    public Page(long start, int pageSize, List<T> data, boolean hasNextPage) {
+        this(start, UNKNOWN_COUNT, pageSize, data);
+        this.nextPage = hasNextPage;
+    }
+
+    /**
+     * 总记录数异步取得的构造方法,取总记录数时等待count查询完成.
+     *
+     * @param start      本页数据在数据库中的起始位置
+     * @param pageSize   本页容量
+     * @param data       本页包含的数据
+     * @param totalCount 执行中的count查询
+     */
+    public Page(long start, int pageSize, List<T> data, CompletableFuture<Long> totalCount) {
+        this(start, UNKNOWN_COUNT, pageSize, data);
+        this.countFuture = totalCount;
+    }
+
+    /**
+     * 总记录数延迟取得的构造方法,首次取总记录数时才执行count查询.
+     *
+     * @param start       本页数据在数据库中的起始位置
+     * @param pageSize    本页容量
+     * @param data        本页包含的数据
+     * @param countLoader count查询
+     */
+    public Page(long start, int pageSize, List<T> data, Supplier<Long> countLoader) {
+        this(start, UNKNOWN_COUNT, pageSize, data);
+        this.countLoader = countLoader;
+    }
+
     /**
      * 获取任一页第一条数据在数据集的位置，每页条数使用默认值.
      *
@@ -63,13 +117,49 @@ public class Page implements Serializable {
      * 取总记录数.
      */
     public long getTotalCount() {
+        resolveTotalCount();
         return this.totalCount;
     }
 
     /**
-     * 取总页数.
+     * 取总记录数的Future,用于与其他异步操作组合. 延迟取得的总记录数在调用时执行count查询.
+     */
+    public CompletableFuture<Long> totalCountAsync() {
+        synchronized (this) {
+            if (countFuture != null) return countFuture;
+        }
+        return CompletableFuture.completedFuture(getTotalCount());
+    }
+
+    /**
+     * 总记录数是否已知或可以取得.
+     */
+    public boolean isTotalCountKnown() {
+        synchronized (this) {
+            if (countFuture != null || countLoader != null) return true;
+        }
+        return this.totalCount != UNKNOWN_COUNT;
+    }
+
+    /**
+     * 等待异步或执行延迟的count查询.
+     */
+    private synchronized void resolveTotalCount() {
+        if (countFuture != null) {
+            totalCount = countFuture.join();
+            countFuture = null;
+        } else if (countLoader != null) {
+            totalCount = countLoader.get();
+            countLoader = null;
+        }
+    }
+
+    /**
+     * 取总页数,总记录数未知时返回{@link #UNKNOWN_COUNT}.
      */
     public long getTotalPageCount() {
+        if (!isTotalCountKnown()) return UNKNOWN_COUNT;
+        long totalCount = getTotalCount();
         if (totalCount % pageSize == 0) return totalCount / pageSize;
         else return totalCount / pageSize + 1;
     }
@@ -84,7 +174,7 @@ public class Page implements Serializable {
     /**
      * 取当前页中的记录.
      */
-    public Object getResult() {
+    public List<T> getResult() {
         return data;
     }
 
@@ -99,6 +189,9 @@ public class Page implements Serializable {
      * 该页是否有下一页.
      */
     public boolean hasNextPage() {
+        if (!isTotalCountKnown()) return this.nextPage;
+        // 本页不满时不必等待总记录数
+        if (data != null && data.size() < pageSize) return false;
         return this.getCurrentPageNo() < this.getTotalPageCount() - 1;
     }
 
@@ -108,4 +201,12 @@ public class Page implements Serializable {
     public boolean hasPreviousPage() {
         return this.getCurrentPageNo() > 1;
     }
-}
\ No newline at end of file
+
+    /**
+     * 序列化前取得总记录数.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        resolveTotalCount();
+        out.defaultWriteObject();
+    }
+}
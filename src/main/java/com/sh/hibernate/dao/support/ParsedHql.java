@@ -0,0 +1,51 @@
+package com.sh.hibernate.dao.support;
+
+/**
+ * hql的解析结果,包含分页用的count语句等派生信息.不可变,可在线程间共享.
+ *
+ * @see HqlParser#parse(String)
+ */
+public class ParsedHql {
+    private final String hql; // 原始hql
+    private final String normalizedHql; // 合并空白后的hql,用作缓存键
+    private final String countHql; // 去除select与order by子句后的count语句
+    private final String orderByClause; // order by子句,没有时为null
+    private final String entityName; // from后第一个Entity的短类名,用于统计分组
+
+    ParsedHql(String hql, String normalizedHql, String countHql, String orderByClause, String entityName) {
+        this.hql = hql;
+        this.normalizedHql = normalizedHql;
+        this.countHql = countHql;
+        this.orderByClause = orderByClause;
+        this.entityName = entityName;
+    }
+
+    public String getHql() {
+        return hql;
+    }
+
+    public String getNormalizedHql() {
+        return normalizedHql;
+    }
+
+    public String getCountHql() {
+        return countHql;
+    }
+
+    public String getOrderByClause() {
+        return orderByClause;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public boolean hasOrderBy() {
+        return orderByClause != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedHql [hql=" + hql + ", countHql=" + countHql + "]";
+    }
+}
@@ -0,0 +1,301 @@
+package com.sh.hibernate.dao.support;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * DAO层的查询结果缓存,按Entity类型分区,键为(查询形式, 参数).
+ * <p/>
+ * 只缓存显式登记的Entity类型,适用于很少变化的字典表等. 每个类型一个有容量上限与有效期的{@link LruCache},
+ * DAO保存、删除该类型(或其子类)的对象时整个分区失效. 同一个实例可注入多个DAO,使其中任一DAO的写操作都能使其他DAO的缓存失效.
+ * <p/>
+ * 缓存的值在线程与Session之间共享,只能是主键等不可变的值,不能是Session中的Entity对象.
+ * 写操作经{@link #invalidateOnCommit(Class)}在事务提交后才使分区失效,提交前写事务自己的查询绕过缓存,不会把未提交的数据放入缓存.
+ * 分区失效时递增其版本号,失效前开始、失效后才结束的查询结果不再放入缓存,避免旧数据在有效期内一直留在缓存中.
+ * 通过hql批量更新或其他途径修改数据时,需调用{@link #invalidate(Class)}或{@link #invalidateOnCommit(Class)}.
+ * <p/>
+ * 另有一个不分Entity类型的count结果分区,供分页查询的CountMode.CACHED使用. count的hql可能关联多个Entity,
+ * 任一类型失效时count分区整个失效,当前事务有尚未提交的写操作时不使用count缓存.
+ * <pre>
+ * QueryResultCache cache = new QueryResultCache(500, 60000);
+ * cache.setCachedClasses(Arrays.asList(Province.class, City.class));
+ * dao.setQueryResultCache(cache);
+ * </pre>
+ */
+@SuppressWarnings("unchecked")
+public class QueryResultCache {
+    public static final int DEFAULT_MAX_SIZE = 500;
+    public static final long DEFAULT_TTL = 60000;
+
+    /**
+     * count结果分区的默认容量与有效期(毫秒).
+     */
+    public static final int DEFAULT_COUNT_CACHE_SIZE = 1000;
+    public static final long DEFAULT_COUNT_CACHE_TTL = 30000;
+
+    private static final Object NULL = new Object(); // 缓存null结果
+
+    private final int maxSize; // 每个Entity类型的最大条目数
+    private final long ttlMillis; // 过期时间(毫秒),小于等于0表示不过期
+    private final ConcurrentMap<Class, Region> regions = new ConcurrentHashMap<Class, Region>();
+    private volatile Region counts = new Region(new LruCache<List<Object>, Object>(DEFAULT_COUNT_CACHE_SIZE, DEFAULT_COUNT_CACHE_TTL));
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize   每个Entity类型的最大条目数
+     * @param ttlMillis 条目的存活时间(毫秒),小于等于0表示不过期
+     */
+    public QueryResultCache(int maxSize, long ttlMillis) {
+        Assert.isTrue(maxSize > 0, "maxSize should be positive");
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 登记需要缓存查询结果的Entity类型.
+     */
+    public void setCachedClasses(Collection<Class> classes) {
+        for (Class clazz : classes) {
+            regions.putIfAbsent(clazz, new Region(new LruCache<List<Object>, Object>(maxSize, ttlMillis)));
+        }
+    }
+
+    public Set<Class> getCachedClasses() {
+        return new HashSet<Class>(regions.keySet());
+    }
+
+    public boolean isCached(Class entityClass) {
+        return regions.containsKey(entityClass);
+    }
+
+    /**
+     * Entity类型的查询当前能否使用缓存:已登记,且当前事务没有尚未提交的该类型(或其子类)的写操作.
+     */
+    public boolean isCacheable(Class entityClass) {
+        return regions.containsKey(entityClass) && !hasPendingInvalidation(entityClass);
+    }
+
+    /**
+     * 取缓存的查询结果,未缓存时执行查询并缓存其结果. Entity类型不可缓存时直接执行查询,见{@link #isCacheable(Class)}.
+     * List结果以只读副本缓存、以副本返回,调用者修改返回的List不影响缓存.
+     *
+     * @param entityClass 查询的Entity类型
+     * @param query       查询,未命中时执行,其结果须为不可变的值,如主键
+     * @param shape       查询形式,如方法名、属性名、排序等
+     */
+    public <R> R get(Class entityClass, Supplier<R> query, Object... shape) {
+        Region region = regions.get(entityClass);
+        if (region == null || hasPendingInvalidation(entityClass)) return query.get();
+        List<Object> key = Arrays.asList(shape);
+        Object value = region.cache.get(key);
+        if (value == null) {
+            long generation = region.getGeneration();
+            value = query.get();
+            if (value instanceof List) value = Collections.unmodifiableList(new ArrayList((List) value));
+            region.putIfCurrent(key, value == null ? NULL : value, generation);
+        }
+        if (value == NULL) return null;
+        return (R) (value instanceof List ? new ArrayList((List) value) : value);
+    }
+
+    /**
+     * 取缓存的count结果,未缓存时执行count并缓存. 当前事务有尚未提交的写操作时直接执行count.
+     *
+     * @param count count查询
+     * @param shape 查询形式,如规范化的hql与参数
+     */
+    public long getCount(Supplier<Long> count, Object... shape) {
+        if (hasPendingInvalidation()) return count.get();
+        Region region = counts;
+        List<Object> key = Arrays.asList(shape);
+        Long value = (Long) region.cache.get(key);
+        if (value == null) {
+            long generation = region.getGeneration();
+            value = count.get();
+            region.putIfCurrent(key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * 取count结果分区,可查看命中率.
+     */
+    public LruCache<List<Object>, Object> getCountCache() {
+        return counts.cache;
+    }
+
+    /**
+     * 设置count结果分区,用于调整其容量与有效期.
+     */
+    public void setCountCache(LruCache<List<Object>, Object> countCache) {
+        Assert.notNull(countCache);
+        this.counts = new Region(countCache);
+    }
+
+    /**
+     * 立即使Entity类型及其父类型的缓存失效,count分区同时失效.
+     */
+    public void invalidate(Class entityClass) {
+        for (Map.Entry<Class, Region> entry : regions.entrySet()) {
+            if (entry.getKey().isAssignableFrom(entityClass)) entry.getValue().invalidate();
+        }
+        counts.invalidate();
+    }
+
+    /**
+     * 在当前事务提交后使Entity类型及其父类型的缓存失效,提交前当前事务对这些类型的查询不使用缓存.
+     * 没有事务同步时立即失效.
+     */
+    public void invalidateOnCommit(Class entityClass) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(entityClass);
+            return;
+        }
+        PendingInvalidation pending = (PendingInvalidation) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingInvalidation();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.classes.add(entityClass);
+    }
+
+    public void invalidateAll() {
+        for (Region region : regions.values()) {
+            region.invalidate();
+        }
+        counts.invalidate();
+    }
+
+    /**
+     * 当前事务中是否有尚未提交的写操作.
+     */
+    private boolean hasPendingInvalidation() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return false;
+        PendingInvalidation pending = (PendingInvalidation) TransactionSynchronizationManager.getResource(this);
+        return pending != null && !pending.classes.isEmpty();
+    }
+
+    /**
+     * 当前事务中是否有尚未提交的、会使entityClass分区失效的写操作.
+     */
+    private boolean hasPendingInvalidation(Class entityClass) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return false;
+        PendingInvalidation pending = (PendingInvalidation) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) return false;
+        for (Class written : pending.classes) {
+            if (entityClass.isAssignableFrom(written)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取Entity类型的缓存分区,可查看该类型的命中率等统计,未登记时返回null.
+     */
+    public LruCache<List<Object>, Object> getRegion(Class entityClass) {
+        Region region = regions.get(entityClass);
+        return region == null ? null : region.cache;
+    }
+
+    public long getHitCount() {
+        long hits = 0;
+        for (Region region : regions.values()) {
+            hits += region.cache.getHitCount();
+        }
+        return hits;
+    }
+
+    public long getMissCount() {
+        long misses = 0;
+        for (Region region : regions.values()) {
+            misses += region.cache.getMissCount();
+        }
+        return misses;
+    }
+
+    /**
+     * 取所有分区合计的命中率,尚无访问时返回0.
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResultCache [classes=" + regions.keySet() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", hitRate="
+                + getHitRate() + "]";
+    }
+
+    /**
+     * 一个Entity类型的缓存分区,每次失效时版本号加一.
+     */
+    private static final class Region {
+        final LruCache<List<Object>, Object> cache;
+        private long generation; // 由this保护
+
+        Region(LruCache<List<Object>, Object> cache) {
+            this.cache = cache;
+        }
+
+        synchronized long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * 查询期间分区未失效时才放入缓存.
+         */
+        synchronized void putIfCurrent(List<Object> key, Object value, long expectedGeneration) {
+            if (generation == expectedGeneration) cache.put(key, value);
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * 事务中写过的Entity类型,提交后使其缓存失效.
+     */
+    private final class PendingInvalidation extends TransactionSynchronizationAdapter {
+        final Set<Class> classes = new HashSet<Class>();
+
+        @Override
+        public void afterCommit() {
+            for (Class entityClass : classes) {
+                invalidate(entityClass);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+        }
+    }
+}
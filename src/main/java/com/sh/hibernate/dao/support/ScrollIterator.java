@@ -0,0 +1,116 @@
+package com.sh.hibernate.dao.support;
+
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 基于ScrollableResults的只进迭代器,逐行读取游标,内存占用不随结果集增长.
+ * <p/>
+ * 每读取evictInterval行,先flush Session,再把遍历期间进入Session的所有实体(包括经关联加载、另行get或save的实体及其集合)
+ * 移出Session. 遍历中对这些实体的修改在移出前已写入数据库;移出后它们变为游离状态,再修改须merge,未初始化的延迟属性不能再加载.
+ * Session为FlushMode.MANUAL(如只读事务)时不flush,其中的修改本来也不会提交.
+ * 创建迭代器之前Session中已有的实体不受影响,因此可以在普通的事务Session中使用. 遍历结束或调用{@link #close()}时关闭游标.
+ * 只有一列时返回该列的值,否则返回Object[].
+ *
+ * @see com.sh.hibernate.dao.HibernateGenericDao#stream(Class, org.hibernate.criterion.Criterion[])
+ */
+@SuppressWarnings("unchecked")
+public class ScrollIterator<T> implements Iterator<T>, Closeable {
+    public static final int DEFAULT_EVICT_INTERVAL = 100;
+
+    private final Session session;
+    private final ScrollableResults results;
+    private final int evictInterval;
+    private final Set<EntityKey> retained; // 创建迭代器前Session中已有的实体
+    private int rows; // 上次清理后读取的行数
+    private Boolean hasNext; // 是否已预读下一行
+    private boolean closed;
+
+    public ScrollIterator(Session session, ScrollableResults results) {
+        this(session, results, DEFAULT_EVICT_INTERVAL);
+    }
+
+    /**
+     * @param evictInterval 每读取多少行清理一次Session
+     */
+    public ScrollIterator(Session session, ScrollableResults results, int evictInterval) {
+        if (evictInterval < 1) throw new IllegalArgumentException("evictInterval must be positive: " + evictInterval);
+        this.session = session;
+        this.results = results;
+        this.evictInterval = evictInterval;
+        this.retained = new HashSet<EntityKey>(getPersistenceContext().getEntitiesByKey().keySet());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) return false;
+        if (hasNext == null) {
+            if (rows >= evictInterval) evictLoaded();
+            hasNext = results.next();
+            if (!hasNext) close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        hasNext = null;
+        rows++;
+        Object[] row = results.get();
+        return (T) (row.length == 1 ? row[0] : row);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 关闭游标,可重复调用.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            evictLoaded();
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * flush后把遍历期间进入Session的实体移出Session,实体的集合随实体一起移出.
+     */
+    private void evictLoaded() {
+        rows = 0;
+        if (!session.isOpen()) return;
+        // 未flush的修改会随实体一起被丢弃
+        if (!FlushMode.isManualFlushMode(session.getFlushMode())) session.flush();
+        List<Object> loaded = new ArrayList<Object>();
+        for (Map.Entry<EntityKey, Object> entry : ((Map<EntityKey, Object>) getPersistenceContext().getEntitiesByKey()).entrySet()) {
+            if (!retained.contains(entry.getKey())) loaded.add(entry.getValue());
+        }
+        for (Object entity : loaded) {
+            if (session.contains(entity)) session.evict(entity);
+        }
+    }
+
+    private PersistenceContext getPersistenceContext() {
+        return ((SessionImplementor) session).getPersistenceContext();
+    }
+}
@@ -1,25 +1,238 @@
 package com.sh.logOut;
 
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import com.p6spy.engine.logging.Category;
 import com.p6spy.engine.spy.appender.StdoutLogger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * p6spy的异步sql日志输出,在spy.properties中以appender=com.sh.logOut.SqlPrint配置.
+ * <p/>
+ * JDBC线程只把语句放入无锁的RingBuffer后立即返回,由单个后台线程格式化并成批写入标准输出,
+ * JDBC线程之间不再因System.out的锁而串行. RingBuffer满时直接丢弃该条日志并计数,不阻塞JDBC线程.
+ * 每行输出为"时间|耗时ms|类别|sql".
+ * <p/>
+ * 通过系统属性配置:
+ * <ul>
+ * <li>sqlprint.bufferSize - RingBuffer容量,向上取2的幂,默认8192</li>
+ * <li>sqlprint.sampleRate - 采样率,0~1,默认1即全部输出</li>
+ * <li>sqlprint.slowThreshold - 耗时达到该毫秒数的语句不参与采样,总是输出,默认1000</li>
+ * <li>sqlprint.maxFingerprints - 执行统计的指纹个数上限,默认5000</li>
+ * </ul>
+ * 每条执行的语句在采样之前计入{@link #getStatistics()},采样与丢弃不影响统计.
+ * RingBuffer与写线程为所有实例共用,p6spy重新加载配置创建新实例时不会再启动线程.
+ */
 public class SqlPrint extends StdoutLogger {
+    private static final Log log = LogFactory.getLog(SqlPrint.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final long DEFAULT_SLOW_THRESHOLD = 1000;
+
+    private static final int MAX_BATCH_CHARS = 64 * 1024; // 单次写出的最大字符数
+    private static final String SEPARATOR = "--------------------------------------------------";
+
+    private static final int bufferSize = ceilingPowerOfTwo(Integer.getInteger("sqlprint.bufferSize", DEFAULT_BUFFER_SIZE));
+    private static final double sampleRate = Double.parseDouble(System.getProperty("sqlprint.sampleRate", "1"));
+    private static final long slowThreshold = Long.getLong("sqlprint.slowThreshold", DEFAULT_SLOW_THRESHOLD);
+
+    private static final SqlStatistics statistics = new SqlStatistics(Integer.getInteger("sqlprint.maxFingerprints", SqlStatistics.DEFAULT_MAX_FINGERPRINTS));
+
+    private static final LongAdder published = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder sampledOut = new LongAdder();
+
     @Override
     public void logSQL(int connectionId, String now, long elapsed, Category category, String prepared, String sql) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        // addBatch记为BATCH,execute与executeBatch记为STATEMENT,只统计后者以免重复计数
+        if (Category.STATEMENT.equals(category)) statistics.record(prepared, sql, elapsed);
+        if (elapsed < slowThreshold && sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return;
+        }
+        publish(connectionId, elapsed, category, sql);
+    }
+
+    @Override
+    public void logText(String text) {
+        publish(-1, -1, null, text);
+    }
 
+    private static void publish(int connectionId, long elapsed, Category category, String sql) {
+        RingBuffer<SqlEvent> ringBuffer = Holder.ringBuffer;
+        long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            dropped.increment();
+            return;
+        }
         try {
-            if (!"".equals(sql)) {
-                System.out.println(dateFormat.format(new Date()) + "|" + sql);
+            SqlEvent event = ringBuffer.get(sequence);
+            event.timestamp = System.currentTimeMillis();
+            event.connectionId = connectionId;
+            event.elapsed = elapsed;
+            event.category = category;
+            event.sql = sql;
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+        published.increment();
+    }
+
+    /**
+     * 按语句指纹汇总的执行统计.
+     */
+    public static SqlStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 已放入RingBuffer的日志条数.
+     */
+    public static long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * RingBuffer满而丢弃的日志条数.
+     */
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 因采样未输出的日志条数.
+     */
+    public static long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * RingBuffer的剩余容量.
+     */
+    public static long getRemainingCapacity() {
+        return Holder.ringBuffer.remainingCapacity();
+    }
+
+    private static int ceilingPowerOfTwo(int size) {
+        if (size < 2) return 2;
+        int n = Integer.highestOneBit(size);
+        return n == size ? n : n << 1;
+    }
+
+    /**
+     * 首次输出日志时才启动写线程,退出时等待已放入的日志写完.
+     */
+    private static final class Holder {
+        static final Disruptor<SqlEvent> disruptor;
+        static final RingBuffer<SqlEvent> ringBuffer;
+
+        static {
+            disruptor = new Disruptor<SqlEvent>(SqlEvent.FACTORY, bufferSize, r -> {
+                Thread thread = new Thread(r, "sqlprint-writer");
+                thread.setDaemon(true);
+                return thread;
+            }, ProducerType.MULTI, new SleepingWaitStrategy());
+            // 默认的FatalExceptionHandler在写出失败时停止写线程,之后RingBuffer写满,所有日志都被丢弃
+            disruptor.setDefaultExceptionHandler(new LogAndContinue());
+            @SuppressWarnings("unchecked")
+            EventHandler<SqlEvent>[] handlers = new EventHandler[]{new Writer()};
+            disruptor.handleEventsWith(handlers);
+            ringBuffer = disruptor.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    disruptor.shutdown(2, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    disruptor.halt();
+                }
+            }, "sqlprint-shutdown"));
+        }
+    }
+
+    /**
+     * 记录写线程中的异常后继续处理后续日志.
+     */
+    private static final class LogAndContinue implements ExceptionHandler<SqlEvent> {
+        public void handleEventException(Throwable ex, long sequence, SqlEvent event) {
+            log.error("Failed to write sql log at sequence " + sequence, ex);
+            if (event != null) {
+                event.category = null;
+                event.sql = null;
+            }
+        }
+
+        public void handleOnStartException(Throwable ex) {
+            log.error("Failed to start sqlprint writer", ex);
+        }
+
+        public void handleOnShutdownException(Throwable ex) {
+            log.error("Failed to shut down sqlprint writer", ex);
+        }
+    }
+
+    /**
+     * RingBuffer中预先分配、循环使用的日志条目.
+     */
+    private static final class SqlEvent {
+        static final EventFactory<SqlEvent> FACTORY = SqlEvent::new;
+
+        long timestamp;
+        int connectionId;
+        long elapsed; // 小于0表示不是sql语句
+        Category category;
+        String sql;
+    }
+
+    /**
+     * 在写线程中格式化日志,每批结束或累积过多时写出一次.
+     */
+    private static final class Writer implements EventHandler<SqlEvent> {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"); // 只在写线程中使用
+        private final StringBuilder batch = new StringBuilder(MAX_BATCH_CHARS);
+        private long lastSecond = -1;
+        private String lastDate;
+
+        public void onEvent(SqlEvent event, long sequence, boolean endOfBatch) {
+            if (event.sql == null || event.sql.isEmpty()) {
+                batch.append(SEPARATOR);
             } else {
-                System.out.println("--------------------------------------------------");
+                batch.append(format(event.timestamp)).append('|');
+                if (event.elapsed >= 0) batch.append(event.elapsed).append("ms|").append(event.category).append('|');
+                batch.append(event.sql);
+            }
+            batch.append(System.lineSeparator());
+            // 释放引用,避免RingBuffer长期持有大sql
+            event.category = null;
+            event.sql = null;
+            if (endOfBatch || batch.length() >= MAX_BATCH_CHARS) {
+                System.out.print(batch);
+                System.out.flush();
+                batch.setLength(0);
             }
-        } catch (Exception e) {
-            // TODO: handle exception
         }
 
+        private String format(long timestamp) {
+            long second = timestamp / 1000;
+            if (second != lastSecond) {
+                lastDate = dateFormat.format(new Date(timestamp));
+                lastSecond = second;
+            }
+            return lastDate;
+        }
     }
 }
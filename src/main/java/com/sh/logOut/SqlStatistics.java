@@ -0,0 +1,317 @@
+package com.sh.logOut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按语句指纹汇总的sql执行统计,由{@link SqlPrint}在每条语句执行后记录.
+ * <p/>
+ * 指纹为去掉字面值后的sql:字符串与数字替换为?,连续空白合并,in列表(?, ?, ?)合并为(?+),统一小写,
+ * 只是参数不同的语句归为同一指纹. 有PreparedStatement原文时以其为准.
+ * 每个指纹记录执行次数、总耗时、最大耗时与按2的幂分桶的耗时分布,计数均为无锁累加.
+ * 运行时可查询最频繁、总耗时最多或最慢的语句:
+ * <pre>
+ * for (SqlStatistics.Snapshot s : SqlPrint.getStatistics().topByTotalElapsed(10)) {
+ *     log.info(s);
+ * }
+ * </pre>
+ * 指纹个数有上限(系统属性sqlprint.maxFingerprints,默认5000),超出后新指纹的语句计入{@link #OTHER}.
+ */
+public class SqlStatistics {
+    public static final int DEFAULT_MAX_FINGERPRINTS = 5000;
+
+    /**
+     * 指纹个数超出上限后,新语句的汇总指纹.
+     */
+    public static final String OTHER = "(other)";
+
+    private static final int BUCKETS = 64; // 第i个桶为耗时在[2^(i-1), 2^i)毫秒的次数,第0个桶为0毫秒
+
+    private final int maxFingerprints;
+    private final ConcurrentMap<String, StatementStats> statistics = new ConcurrentHashMap<String, StatementStats>();
+
+    public SqlStatistics() {
+        this(DEFAULT_MAX_FINGERPRINTS);
+    }
+
+    public SqlStatistics(int maxFingerprints) {
+        if (maxFingerprints < 1) throw new IllegalArgumentException("maxFingerprints must be positive: " + maxFingerprints);
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * 记录一次语句执行.
+     *
+     * @param prepared 带?占位符的PreparedStatement原文,没有时为null或空串
+     * @param sql      实际执行的sql
+     * @param elapsed  耗时(毫秒)
+     */
+    public void record(String prepared, String sql, long elapsed) {
+        String statement = prepared == null || prepared.isEmpty() ? sql : prepared;
+        if (statement == null || statement.isEmpty()) return;
+        getStats(fingerprint(statement)).record(elapsed);
+    }
+
+    private StatementStats getStats(String fingerprint) {
+        StatementStats stats = statistics.get(fingerprint);
+        if (stats == null) {
+            if (statistics.size() >= maxFingerprints) fingerprint = OTHER;
+            stats = new StatementStats(fingerprint);
+            StatementStats existing = statistics.putIfAbsent(fingerprint, stats);
+            if (existing != null) stats = existing;
+        }
+        return stats;
+    }
+
+    /**
+     * 执行次数最多的n个语句.
+     */
+    public List<Snapshot> topByCount(int n) {
+        return top(n, (a, b) -> Long.compare(b.count, a.count));
+    }
+
+    /**
+     * 总耗时最多的n个语句.
+     */
+    public List<Snapshot> topByTotalElapsed(int n) {
+        return top(n, (a, b) -> Long.compare(b.totalElapsed, a.totalElapsed));
+    }
+
+    /**
+     * 平均耗时最长的n个语句.
+     */
+    public List<Snapshot> topByMeanElapsed(int n) {
+        return top(n, (a, b) -> Double.compare(b.getMeanElapsed(), a.getMeanElapsed()));
+    }
+
+    /**
+     * 最大耗时最长的n个语句.
+     */
+    public List<Snapshot> topByMaxElapsed(int n) {
+        return top(n, (a, b) -> Long.compare(b.maxElapsed, a.maxElapsed));
+    }
+
+    /**
+     * 按指定顺序取前n个语句的统计快照.
+     */
+    public List<Snapshot> top(int n, Comparator<Snapshot> order) {
+        List<Snapshot> snapshots = getSnapshots();
+        Collections.sort(snapshots, order);
+        return snapshots.size() > n ? new ArrayList<Snapshot>(snapshots.subList(0, n)) : snapshots;
+    }
+
+    /**
+     * 取所有语句的统计快照.
+     */
+    public List<Snapshot> getSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>(statistics.size());
+        for (StatementStats stats : statistics.values()) {
+            Snapshot snapshot = stats.snapshot();
+            if (snapshot.count > 0) snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
+    /**
+     * 取一个指纹的统计快照,没有记录时返回null.
+     */
+    public Snapshot getSnapshot(String fingerprint) {
+        StatementStats stats = statistics.get(fingerprint);
+        return stats == null ? null : stats.snapshot();
+    }
+
+    /**
+     * 已记录的指纹个数.
+     */
+    public int size() {
+        return statistics.size();
+    }
+
+    /**
+     * 清空统计.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * 计算sql的指纹:字符串与数字字面值替换为?,连续的?列表合并为?+,合并空白并转为小写.
+     */
+    public static String fingerprint(String sql) {
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // 字符串字面值,''为转义的单引号
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') i += 2;
+                        else break;
+                    } else i++;
+                }
+                i++;
+                appendPlaceholder(out);
+            } else if (c == '?') {
+                i++;
+                appendPlaceholder(out);
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                appendPlaceholder(out);
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) i++;
+                if (out.length() > 0 && i < length) out.append(' ');
+            } else {
+                out.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 追加?,紧跟在"?,"或"?+,"之后时合并为?+.
+     */
+    private static void appendPlaceholder(StringBuilder out) {
+        int i = out.length() - 1;
+        if (i >= 0 && out.charAt(i) == ' ') i--;
+        if (i >= 0 && out.charAt(i) == ',') {
+            int j = i - 1;
+            if (j >= 0 && out.charAt(j) == ' ') j--;
+            if (j >= 0 && out.charAt(j) == '+' && j > 0 && out.charAt(j - 1) == '?') {
+                out.setLength(j + 1);
+                return;
+            }
+            if (j >= 0 && out.charAt(j) == '?') {
+                out.setLength(j + 1);
+                out.append('+');
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) return false;
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '.';
+    }
+
+    /**
+     * 按耗时分桶的下标,0毫秒在第0个桶.
+     */
+    static int bucketOf(long elapsed) {
+        return elapsed <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsed));
+    }
+
+    /**
+     * 一个指纹的累计统计.
+     */
+    private static final class StatementStats {
+        private final String fingerprint;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalElapsed = new LongAdder();
+        private final LongAccumulator maxElapsed = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        StatementStats(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void record(long elapsed) {
+            count.increment();
+            totalElapsed.add(elapsed);
+            maxElapsed.accumulate(elapsed);
+            histogram.incrementAndGet(bucketOf(elapsed));
+        }
+
+        Snapshot snapshot() {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            return new Snapshot(fingerprint, count.sum(), totalElapsed.sum(), maxElapsed.get(), buckets);
+        }
+    }
+
+    /**
+     * 一个指纹某一时刻的统计,耗时单位为毫秒. 各项分别读取,并发记录时彼此可能略有出入.
+     */
+    public static final class Snapshot {
+        private final String fingerprint;
+        private final long count;
+        private final long totalElapsed;
+        private final long maxElapsed;
+        private final long[] buckets;
+
+        Snapshot(String fingerprint, long count, long totalElapsed, long maxElapsed, long[] buckets) {
+            this.fingerprint = fingerprint;
+            this.count = count;
+            this.totalElapsed = totalElapsed;
+            this.maxElapsed = maxElapsed;
+            this.buckets = buckets;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalElapsed() {
+            return totalElapsed;
+        }
+
+        public long getMaxElapsed() {
+            return maxElapsed;
+        }
+
+        public double getMeanElapsed() {
+            return count == 0 ? 0d : (double) totalElapsed / count;
+        }
+
+        /**
+         * 按分桶估算的耗时分位数,返回所在桶的上界(不超过最大耗时).
+         *
+         * @param quantile 0~1,如0.99
+         */
+        public long getPercentile(double quantile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && buckets[i] > 0) return i == 0 ? 0 : Math.min(maxElapsed, (1L << i) - 1);
+            }
+            return maxElapsed;
+        }
+
+        /**
+         * 各耗时分桶的次数,第i个桶为[2^(i-1), 2^i)毫秒,第0个桶为0毫秒.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", total=" + totalElapsed + "ms, mean=" + String.format("%.2f", getMeanElapsed()) + "ms, p95=" + getPercentile(0.95)
+                    + "ms, p99=" + getPercentile(0.99) + "ms, max=" + maxElapsed + "ms | " + fingerprint;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.sh.model;
 
 import com.sh.model.component.BaseEntity;
+import com.share.annotations.CacheRegion;
 import com.share.annotations.Comment;
 
 import javax.persistence.*;
@@ -8,6 +9,7 @@ import javax.persistence.*;
 @Entity
 @Table(name = "t_student")
 @Comment("考生表")
+@CacheRegion
 public class Student extends BaseEntity {
 
 
@@ -2,6 +2,7 @@ package com.sh.model;
 
 import com.sh.model.component.Address;
 import com.sh.model.component.BaseEntity;
+import com.share.annotations.CacheRegion;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "t_teacher")
+@CacheRegion(collections = "students")
 public class Teacher extends BaseEntity {
 
     private String name;
@@ -4,11 +4,14 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.share.annotations.CacheRegion;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import java.io.Serializable;
 import java.util.Date;
@@ -22,11 +25,24 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "u_users")
+@CacheRegion
+@NamedQueries({
+        @NamedQuery(name = Users.FIND_ALL, query = "from Users"),
+        @NamedQuery(name = Users.FIND_BY_NAME, query = "from Users u where u.name = :name"),
+        @NamedQuery(name = Users.FIND_SUMMARIES, query = "select u.id, u.name from Users u")
+})
 public class Users implements Serializable {
     /**
      * 字段或域定义：<code>serialVersionUID</code>
      */
     private static final long serialVersionUID = -5313723380552512084L;
+
+    /**
+     * 命名查询,SessionFactory启动时编译并校验.
+     */
+    public static final String FIND_ALL = "Users.findAll";
+    public static final String FIND_BY_NAME = "Users.findByName";
+    public static final String FIND_SUMMARIES = "Users.findSummaries";
     /**
      * 主键ID
      */
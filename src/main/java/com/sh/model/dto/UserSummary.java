@@ -0,0 +1,31 @@
+package com.sh.model.dto;
+
+import java.io.Serializable;
+
+/**
+ * 用户列表使用的精简信息,由投影查询直接构造,不加载Users实体.
+ */
+public class UserSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String name;
+
+    public UserSummary(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary [id=" + id + ", name=" + name + "]";
+    }
+}
@@ -2,25 +2,32 @@ package com.sh.service;
 
 import com.sh.dao.UsersDAO;
 import com.sh.dao.master.MasterUserDao;
+import com.sh.hibernate.dao.HibernateEntityDao;
 import com.sh.model.Users;
+import com.sh.model.dto.UserSummary;
+import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.transform.Transformers;
 
 import javax.annotation.Resource;
+import java.util.Collections;
 import java.util.List;
 
 
 public class UserService<T> {
     @Resource
-    private UsersDAO userDao;
+    private UsersDAO<Users> userDao;
 
     @Resource
     private MasterUserDao masterUserDao;
 
+    @Resource(name = "hedao")
+    private HibernateEntityDao<T> hedao;
+
 
     public List<Users> findUsers() {
 
-        List<Users> list = userDao.getAllUser("from Users");
+        List<Users> list = userDao.findByNamedQuery(Users.FIND_ALL, Collections.emptyMap());
         return list;
     }
 
@@ -31,22 +38,61 @@ public class UserService<T> {
     }
 
     public List<Users> findUsersList() {
-        List<Users> list = masterUserDao.getSession().createQuery(" from Users").list();
+        List<Users> list = masterUserDao.getSession().getNamedQuery(Users.FIND_ALL).list();
         return list;
     }
 
-    public List<T> find(String sql) {
+    public List<Users> findUsersByName(String name) {
+        List<Users> list = userDao.findByNamedQuery(Users.FIND_BY_NAME, Collections.singletonMap("name", name));
+        return list;
+    }
 
+    /**
+     * 只取列表需要的id与name,不加载Users实体.
+     */
+    public List<UserSummary> findUserSummaries() {
+        return hedao.findProjectionByNamedQuery(UserSummary.class, Users.FIND_SUMMARIES);
+    }
 
-        List<T> list = masterUserDao.getSession().createQuery(sql).list();
+    /**
+     * 执行hql,参数以?占位并按顺序绑定.
+     */
+    public List<T> find(String sql, Object... values) {
+        Query query = masterUserDao.getSession().createQuery(sql);
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
+        List<T> list = query.list();
         return list;
     }
 
-    public List<T> findBySqlQuery(String sql, String entryName) {
+    /**
+     * 投影查询,hql选出的各列按顺序传给dtoClass的构造函数.
+     *
+     * @see com.sh.hibernate.dao.HibernateGenericDao#findProjection(Class, String, Object...)
+     */
+    public <D> List<D> findProjection(String hql, Class<D> dtoClass) {
+        return hedao.findProjection(dtoClass, hql);
+    }
+
+    /**
+     * 执行sql,参数以?占位并按顺序绑定.
+     */
+    public List<T> findBySqlQuery(String sql, String entryName, Object... values) {
         SQLQuery query = masterUserDao.getSession().createSQLQuery(sql);
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(i, values[i]);
+        }
         List<T> list = ((entryName.indexOf("Map") < 0) ? query.addEntity(entryName) : query.setResultTransformer(Transformers.ALIAS_TO_ENTITY_MAP)).list();
         return list;
     }
 
+    /**
+     * sql投影查询,选出的各列按顺序传给dtoClass的构造函数,不为每行建Map.
+     */
+    public <D> List<D> findBySqlQuery(String sql, Class<D> dtoClass) {
+        return hedao.findProjectionBySql(dtoClass, sql);
+    }
+
 
 }
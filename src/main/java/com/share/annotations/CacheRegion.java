@@ -0,0 +1,24 @@
+package com.share.annotations;
+
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明Entity使用二级缓存,由{@link com.share.utils.hibernate.CacheRegionSessionFactoryBean}在构建SessionFactory时登记.
+ * <p/>
+ * region默认为Entity的类名,collections中的集合属性使用相同的并发策略,region为"类名.属性名".
+ * 设置了hibernate.cache.region_prefix时,实际的region名前还要加上"前缀.",ehcache-hibernate.xml中须按加前缀后的名称配置.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheRegion {
+    CacheConcurrencyStrategy usage() default CacheConcurrencyStrategy.READ_WRITE;
+
+    String region() default "";
+
+    String[] collections() default {};
+}
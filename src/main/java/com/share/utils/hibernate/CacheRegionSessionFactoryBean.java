@@ -0,0 +1,55 @@
+package com.share.utils.hibernate;
+
+import com.share.annotations.CacheRegion;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBean;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * 按{@link CacheRegion}登记二级缓存的LocalSessionFactoryBean.
+ * <p/>
+ * 构建SessionFactory前扫描packagesToScan中带有CacheRegion的Entity,为其及其声明的集合属性设置缓存并发策略与region.
+ * 缓存的实现由hibernate.cache.region.factory_class指定.
+ */
+public class CacheRegionSessionFactoryBean extends LocalSessionFactoryBean {
+    private String[] packagesToScan;
+
+    @Override
+    public void setPackagesToScan(String... packagesToScan) {
+        super.setPackagesToScan(packagesToScan);
+        this.packagesToScan = packagesToScan;
+    }
+
+    @Override
+    protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder sfb) {
+        if (packagesToScan != null) {
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(CacheRegion.class));
+            for (String pkg : packagesToScan) {
+                for (BeanDefinition candidate : scanner.findCandidateComponents(pkg)) {
+                    bindCacheRegion(sfb, ClassUtils.resolveClassName(candidate.getBeanClassName(), ClassUtils.getDefaultClassLoader()));
+                }
+            }
+        }
+        return super.buildSessionFactory(sfb);
+    }
+
+    private void bindCacheRegion(LocalSessionFactoryBuilder sfb, Class<?> entityClass) {
+        CacheRegion cacheRegion = entityClass.getAnnotation(CacheRegion.class);
+        if (cacheRegion.usage() == CacheConcurrencyStrategy.NONE) return;
+        String entityName = entityClass.getName();
+        String usage = cacheRegion.usage().toAccessType().getExternalName();
+        String region = StringUtils.hasText(cacheRegion.region()) ? cacheRegion.region() : entityName;
+        sfb.setCacheConcurrencyStrategy(entityName, usage, region);
+        for (String collection : cacheRegion.collections()) {
+            String role = entityName + "." + collection;
+            sfb.setCollectionCacheConcurrencyStrategy(role, usage, role);
+        }
+    }
+}
@@ -19,6 +19,29 @@ public class PatternCompile {
 
     private Logger log = Logger.getLogger(this.getClass());
 
+    /**
+     * 校验结果缓存,为null时不缓存.
+     */
+    private ValidationCache cache;
+
+    public PatternCompile() {
+    }
+
+    /**
+     * @param cache 校验结果缓存,同一导入任务内共享以复用重复值的校验结果
+     */
+    public PatternCompile(ValidationCache cache) {
+        this.cache = cache;
+    }
+
+    public ValidationCache getCache() {
+        return cache;
+    }
+
+    public void setCache(ValidationCache cache) {
+        this.cache = cache;
+    }
+
     public static void main(String[] args) {
         PatternCompile pc = new PatternCompile();
         System.out.println("Can not set java.lang. field com.itsv.olderpeople.personinfo.dto.PersonInfoDto.age to java.lang.String".indexOf("Integer") != -1);
@@ -33,6 +56,21 @@ public class PatternCompile {
         return matcher.matches();
     }
 
+    /**
+     * 按正则校验字段值,设置了校验结果缓存时先查缓存,命中则不再匹配.
+     *
+     * @see ValidationCache
+     */
+    private boolean matches(String reg, String str) {
+        if (cache == null) return compile(str, reg);
+        Boolean result = cache.get(reg, str);
+        if (result == null) {
+            result = compile(str, reg);
+            cache.put(reg, str, result);
+        }
+        return result;
+    }
+
     /**
      * ������ʽ��֤��
      *
@@ -51,65 +89,45 @@ public class PatternCompile {
             for (Annotation annotation : anno) {
                 if (annotation instanceof IDCard) {
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    if (obj != null && obj.toString().length() == 18)
-                        pattern = Pattern.compile(((IDCard) annotation).new_pattern());
-                    else pattern = Pattern.compile(((IDCard) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    String regex;
+                    if (obj != null && obj.toString().length() == 18) regex = ((IDCard) annotation).new_pattern();
+                    else regex = ((IDCard) annotation).pattern();
+                    b = matches(regex, obj == null ? "" : obj.toString());
                     log.debug("�������֤��:" + b);
                 }
                 if (annotation instanceof Phone) {
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((Phone) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((Phone) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("�����ֻ�����:" + b);
                 }
                 if (annotation instanceof Tel) {
 
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((Tel) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((Tel) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("����绰����:" + b);
                 }
                 if (annotation instanceof Email) {
 
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((Email) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((Email) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("��������ʼ�:" + b);
                 }
                 if (annotation instanceof PInteger) {
 
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((PInteger) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((PInteger) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("����������:" + b);
                 }
                 if (annotation instanceof PFloat) {
 
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((PFloat) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((PFloat) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("������������:" + b);
                 }
                 if (annotation instanceof ZipCode) {
 
                     Object obj = field_new.get(t);
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((ZipCode) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj == null ? "" : obj.toString());
-                    b = matcher.matches();
+                    b = matches(((ZipCode) annotation).pattern(), obj == null ? "" : obj.toString());
                     log.debug("�����ʱ�:" + b);
                 }
                 if (annotation instanceof Date) {
@@ -117,10 +135,7 @@ public class PatternCompile {
                     Object obj = field_new.get(t);
                     java.util.Date date = ((java.util.Date) obj);
                     String obj_str = DateFromat.formatDate(date, "yyyy-MM-dd");
-                    Pattern pattern = null;
-                    pattern = Pattern.compile(((Date) annotation).pattern());
-                    Matcher matcher = pattern.matcher(obj_str == null ? "" : obj_str);
-                    b = matcher.matches();
+                    b = matches(((Date) annotation).pattern(), obj_str == null ? "" : obj_str);
                     log.debug("��������:" + b);
                 }
             }
@@ -0,0 +1,161 @@
+package org.mec.validation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 校验结果缓存,按(校验注解的正则, 字段值)记住校验结果.
+ * <p>
+ * 导入数据中区号、邮编、邮箱等低基数字段大量重复,命中缓存后直接返回结果,不再做正则匹配.
+ * 缓存为按访问顺序淘汰的LRU,容量有上限,并提供命中率统计,便于按导入任务调整容量.
+ * </p>
+ * <pre>
+ * ValidationCache cache = new ValidationCache(10000);
+ * PatternCompile pc = new PatternCompile(cache);
+ * ...
+ * log.info("hitRate=" + cache.getHitRate());
+ * </pre>
+ */
+public class ValidationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+    private final Map<Key, Boolean> results;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public ValidationCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize 缓存的最大条目数,超出后淘汰最久未访问的条目
+     */
+    public ValidationCache(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        this.maxSize = maxSize;
+        this.results = new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取得缓存的校验结果.
+     *
+     * @return 校验结果,未命中时返回null
+     */
+    public Boolean get(String pattern, String value) {
+        Boolean result;
+        synchronized (results) {
+            result = results.get(new Key(pattern, value));
+        }
+        if (result == null) missCount.incrementAndGet();
+        else hitCount.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * 缓存校验结果.
+     */
+    public void put(String pattern, String value, boolean result) {
+        synchronized (results) {
+            results.put(new Key(pattern, value), result);
+        }
+    }
+
+    /**
+     * 清空缓存,统计数据保留.
+     */
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /**
+     * 统计数据清零.
+     */
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 取命中率,尚无访问时返回0.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", hitRate=" + getHitRate() + "]";
+    }
+
+    /**
+     * 缓存键,注解的校验结果完全由其正则决定,正则相同的注解共享缓存条目.
+     */
+    private static final class Key {
+        private final String pattern;
+        private final String value;
+        private final int hash;
+
+        Key(String pattern, String value) {
+            this.pattern = pattern;
+            this.value = value;
+            this.hash = 31 * pattern.hashCode() + value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return hash == other.hash && value.equals(other.value) && pattern.equals(other.pattern);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import com.sh.hibernate.dao.support.HqlParser;
+import com.sh.hibernate.dao.support.ParsedHql;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HqlParser由hql派生count语句与order by子句的测试.
+ */
+public class TestHqlParser {
+
+    @Test
+    public void testRemoveTrailingOrderBy() {
+        assertEquals("from User u ", HqlParser.removeOrders("from User u order by u.id desc"));
+        assertEquals("from User u\n", HqlParser.removeOrders("from User u\nORDER\n  BY u.name, u.id"));
+    }
+
+    @Test
+    public void testWithoutOrderBy() {
+        String hql = "from User u where u.status = ?";
+        assertEquals(hql, HqlParser.removeOrders(hql));
+        ParsedHql parsed = HqlParser.parse(hql);
+        assertFalse(parsed.hasOrderBy());
+        assertNull(parsed.getOrderByClause());
+    }
+
+    @Test
+    public void testOrderByInStringLiteral() {
+        assertEquals("from User u where u.name = 'order by x' ",
+                HqlParser.removeOrders("from User u where u.name = 'order by x' order by u.id"));
+        assertEquals("from User u where u.name = 'it''s order by' and u.id > ? ",
+                HqlParser.removeOrders("from User u where u.name = 'it''s order by' and u.id > ? order by u.id"));
+        String hql = "from User u where u.name = 'order by x'";
+        assertEquals(hql, HqlParser.removeOrders(hql));
+    }
+
+    @Test
+    public void testOrderByInSubquery() {
+        String hql = "from User u where u.id in (select max(o.userId) from Orders o group by o.type order by o.type)";
+        assertEquals(hql, HqlParser.removeOrders(hql));
+        assertEquals(hql + " ", HqlParser.removeOrders(hql + " order by u.name"));
+    }
+
+    @Test
+    public void testOrderInIdentifier() {
+        String hql = "from Border b where b.reorder = ? and b.order_by = ?";
+        assertEquals(hql, HqlParser.removeOrders(hql));
+        assertEquals("from Border b ", HqlParser.removeOrders("from Border b order by b.orderBy"));
+    }
+
+    @Test
+    public void testCountHql() {
+        ParsedHql parsed = HqlParser.parse("select u from User u where u.name = 'order by' and u.status = ? order by u.id");
+        assertEquals(" select count (*) from User u where u.name = 'order by' and u.status = ? ", parsed.getCountHql());
+        assertTrue(parsed.hasOrderBy());
+        assertEquals("order by u.id", parsed.getOrderByClause());
+    }
+
+    @Test
+    public void testEntityName() {
+        assertEquals("Users", HqlParser.parse("select u.name from com.sh.model.Users u").getEntityName());
+        assertEquals("User", HqlParser.parse("FROM User").getEntityName());
+    }
+
+    @Test
+    public void testParseCached() {
+        String hql = "from User u where u.id = ? order by u.id";
+        assertSame(HqlParser.parse(hql), HqlParser.parse(hql));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("from User u where u.id = ?", HqlParser.normalize("  from\tUser u\n where  u.id = ?  "));
+    }
+}
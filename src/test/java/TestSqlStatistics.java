@@ -0,0 +1,115 @@
+import com.sh.logOut.SqlStatistics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * SqlStatistics的语句指纹与耗时分桶测试.
+ */
+public class TestSqlStatistics {
+
+    @Test
+    public void testFingerprintLiterals() {
+        assertEquals("select * from t where name = ? and id = ?",
+                SqlStatistics.fingerprint("SELECT * FROM t WHERE name = 'abc' AND id = 42"));
+        assertEquals("select * from t where x = ? and y = ?",
+                SqlStatistics.fingerprint("select * from t where x = 1.5e3 and y = 0x1F"));
+    }
+
+    @Test
+    public void testFingerprintEscapedQuote() {
+        assertEquals("select * from t where name = ? and id = ?",
+                SqlStatistics.fingerprint("select * from t where name = 'O''Brien' and id = 1"));
+        assertEquals("update t set a = ?", SqlStatistics.fingerprint("update t set a = ''''"));
+    }
+
+    @Test
+    public void testFingerprintDigitsInIdentifier() {
+        assertEquals("select col1, t2.c_3 from t2 where x = ?",
+                SqlStatistics.fingerprint("select col1, t2.c_3 from t2 where x = 3"));
+    }
+
+    @Test
+    public void testFingerprintInList() {
+        assertEquals("select * from t where id in (?+)", SqlStatistics.fingerprint("select * from t where id in (1, 2, 3)"));
+        assertEquals("select * from t where id in (?+)", SqlStatistics.fingerprint("select * from t where id in (?,?)"));
+        assertEquals("select * from t where id in (?+)", SqlStatistics.fingerprint("select * from t where id in ('a' , 'b', 'c', 'd')"));
+        assertEquals("select * from t where id in (?)", SqlStatistics.fingerprint("select * from t where id in (7)"));
+    }
+
+    @Test
+    public void testFingerprintWhitespace() {
+        assertEquals("select a from t where b = ?", SqlStatistics.fingerprint("  SELECT a\n\tFROM   t WHERE b = ?  "));
+    }
+
+    @Test
+    public void testRecordPrefersPrepared() {
+        SqlStatistics statistics = new SqlStatistics();
+        statistics.record("select * from t where id = ?", "select * from t where id = 1", 3);
+        statistics.record("", "select * from t where id = 2", 5);
+        SqlStatistics.Snapshot snapshot = statistics.getSnapshot("select * from t where id = ?");
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.getCount());
+        assertEquals(8, snapshot.getTotalElapsed());
+        assertEquals(5, snapshot.getMaxElapsed());
+        assertEquals(4.0, snapshot.getMeanElapsed(), 0.001);
+        assertEquals(1, statistics.size());
+    }
+
+    @Test
+    public void testPercentileBuckets() {
+        SqlStatistics statistics = new SqlStatistics();
+        for (long elapsed : new long[]{0, 1, 3, 100, 1000}) {
+            statistics.record(null, "select 1", elapsed);
+        }
+        SqlStatistics.Snapshot snapshot = statistics.getSnapshot("select ?");
+        // 第i个桶为[2^(i-1), 2^i)毫秒,分位数取所在桶的上界
+        long[] buckets = snapshot.getBuckets();
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[1]);
+        assertEquals(1, buckets[2]);
+        assertEquals(1, buckets[7]);
+        assertEquals(1, buckets[10]);
+        assertEquals(0, snapshot.getPercentile(0.2));
+        assertEquals(1, snapshot.getPercentile(0.4));
+        assertEquals(3, snapshot.getPercentile(0.5));
+        assertEquals(127, snapshot.getPercentile(0.8));
+        // 上界不超过最大耗时
+        assertEquals(1000, snapshot.getPercentile(0.99));
+        assertEquals(1000, snapshot.getPercentile(1));
+    }
+
+    @Test
+    public void testPercentileBucketBounds() {
+        SqlStatistics statistics = new SqlStatistics();
+        statistics.record(null, "select 1", 4);
+        statistics.record(null, "select 1", 7);
+        statistics.record(null, "select 1", 8);
+        SqlStatistics.Snapshot snapshot = statistics.getSnapshot("select ?");
+        long[] buckets = snapshot.getBuckets();
+        assertEquals(2, buckets[3]);
+        assertEquals(1, buckets[4]);
+        assertEquals(7, snapshot.getPercentile(0.5));
+        assertEquals(8, snapshot.getPercentile(1));
+    }
+
+    @Test
+    public void testEmpty() {
+        SqlStatistics statistics = new SqlStatistics();
+        assertNull(statistics.getSnapshot("select ?"));
+        assertEquals(0, statistics.getSnapshots().size());
+    }
+
+    @Test
+    public void testMaxFingerprints() {
+        SqlStatistics statistics = new SqlStatistics(1);
+        statistics.record(null, "select a from t", 1);
+        statistics.record(null, "select b from t", 1);
+        statistics.record(null, "select c from t", 1);
+        assertEquals(1, statistics.getSnapshot("select a from t").getCount());
+        assertEquals(2, statistics.getSnapshot(SqlStatistics.OTHER).getCount());
+        assertNull(statistics.getSnapshot("select c from t"));
+    }
+}